@@ -0,0 +1,70 @@
+package gov.cdc.foundation.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.IOUtils;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+// Rules and payloads of various sizes, built from the JUnit resources
+public class BenchmarkData {
+
+	public static final String JUNIT = "junit";
+
+	private BenchmarkData() {
+		throw new IllegalAccessError("Helper class");
+	}
+
+	// Either the JUnit rules or the JUnit rules plus the given number of extra JSONPath rules
+	public static JSONObject rules(String size) throws IOException {
+		JSONObject rules = new JSONObject(resource("junit/rules.json"));
+		if (JUNIT.equals(size))
+			return rules;
+
+		JSONObject all = rules.getJSONObject("$all");
+		int nbOfRules = Integer.parseInt(size);
+		for (int i = 0; i < nbOfRules; i++)
+			all.put("$.items.f" + i, new JSONArray().put("v" + i));
+		return rules;
+	}
+
+	// A valid payload for the rules, padded up to the given size (ex: 1KB, 100KB, 1MB)
+	public static String payload(String size, JSONObject rules) throws IOException {
+		JSONObject payload = new JSONObject(resource("junit/object.json"));
+
+		JSONObject items = new JSONObject();
+		for (String path : rules.getJSONObject("$all").keySet())
+			if (path.startsWith("$.items."))
+				items.put(path.substring("$.items.".length()), rules.getJSONObject("$all").getJSONArray(path));
+		payload.put("items", items);
+
+		long target = parseSize(size);
+		JSONArray padding = new JSONArray();
+		payload.put("padding", padding);
+		int length = payload.toString().length();
+		while (length < target) {
+			String value = "padding value " + padding.length();
+			padding.put(value);
+			length += value.length() + 3;
+		}
+		return payload.toString();
+	}
+
+	private static long parseSize(String size) {
+		String value = size.toUpperCase();
+		if (value.endsWith("MB"))
+			return Long.parseLong(value.substring(0, value.length() - 2)) * 1024 * 1024;
+		if (value.endsWith("KB"))
+			return Long.parseLong(value.substring(0, value.length() - 2)) * 1024;
+		return Long.parseLong(value);
+	}
+
+	private static String resource(String path) throws IOException {
+		try (InputStream in = BenchmarkData.class.getClassLoader().getResourceAsStream(path)) {
+			return IOUtils.toString(in, StandardCharsets.UTF_8);
+		}
+	}
+
+}
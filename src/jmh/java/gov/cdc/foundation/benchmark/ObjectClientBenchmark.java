@@ -0,0 +1,106 @@
+package gov.cdc.foundation.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggingSystem;
+import org.springframework.web.client.RestTemplate;
+
+import com.sun.net.httpserver.HttpServer;
+
+import gov.cdc.foundation.helper.MetricsHelper;
+import gov.cdc.foundation.helper.ObjectClientHelper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+// Load test of the object microservice calls against a local stub, each call fetches the rules of a profile.
+// The JDK connection pool is set up once per JVM, so each client configuration runs in its own fork.
+// Without keep-alive, every call opens a new connection, which also leaves sockets in TIME_WAIT on the client side.
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Threads(32)
+public class ObjectClientBenchmark {
+
+	@Param({ "100" })
+	public String rules;
+
+	private HttpServer server;
+	private ExecutorService executor;
+	private String url;
+	private RestTemplate restTemplate;
+	private ObjectClientHelper client;
+
+	@Setup
+	public void setup() throws IOException {
+		// Outside of the application, every request would be logged
+		LoggingSystem.get(getClass().getClassLoader()).setLogLevel("org.springframework", LogLevel.INFO);
+
+		byte[] body = BenchmarkData.rules(rules).toString().getBytes(StandardCharsets.UTF_8);
+
+		// Stub of the object microservice, answers every GET with the same rules.
+		// Headers and body are written separately, so without TCP_NODELAY a kept alive connection waits for the delayed ACK.
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+		server.createContext("/", exchange -> {
+			exchange.getResponseHeaders().add("Content-Type", "application/json");
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		});
+		executor = Executors.newFixedThreadPool(64);
+		server.setExecutor(executor);
+		server.start();
+
+		url = "http://127.0.0.1:" + server.getAddress().getPort() + "/api/1.0/settings/generic-rules/profile";
+		client = new ObjectClientHelper(64, 10000, new MetricsHelper(new SimpleMeterRegistry()));
+		restTemplate = new RestTemplate();
+	}
+
+	@TearDown
+	public void tearDown() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = { "-Dhttp.keepAlive=true", "-Dhttp.maxConnections=64" })
+	public String pooled() throws Exception {
+		return client.execute(() -> restTemplate.getForObject(url, String.class));
+	}
+
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = { "-Dhttp.keepAlive=true", "-Dhttp.maxConnections=5" })
+	public String jdkDefaultPool() throws Exception {
+		// Only 5 idle connections are kept, the other ones are closed after each call
+		return client.execute(() -> restTemplate.getForObject(url, String.class));
+	}
+
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = { "-Dhttp.keepAlive=false" })
+	public String newConnectionPerCall() throws Exception {
+		return client.execute(() -> restTemplate.getForObject(url, String.class));
+	}
+
+}
@@ -0,0 +1,44 @@
+package gov.cdc.foundation.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import gov.cdc.foundation.engine.CompiledProfile;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RulesInitializationBenchmark {
+
+	@Param({ BenchmarkData.JUNIT, "100", "1000", "5000" })
+	public String rules;
+
+	private String rulesJson;
+
+	@Setup
+	public void setup() throws Exception {
+		rulesJson = BenchmarkData.rules(rules).toString();
+	}
+
+	@Benchmark
+	public CompiledProfile parseAndInitialize() throws Exception {
+		// What validate/{profile} paid on every call before the profile cache
+		return new CompiledProfile(null, new JSONObject(rulesJson), 1);
+	}
+
+}
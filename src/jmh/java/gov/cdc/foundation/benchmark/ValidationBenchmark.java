@@ -0,0 +1,134 @@
+package gov.cdc.foundation.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import gov.cdc.engine.result.ValidationResult;
+import gov.cdc.foundation.engine.CompiledProfile;
+import gov.cdc.foundation.engine.CompiledRules;
+import gov.cdc.foundation.engine.ExplainMode;
+import gov.cdc.foundation.engine.JsonNodes;
+import gov.cdc.foundation.engine.ProfileOptions;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ValidationBenchmark {
+
+	@Param({ BenchmarkData.JUNIT, "100", "1000" })
+	public String rules;
+
+	@Param({ "1KB", "100KB", "1MB" })
+	public String payload;
+
+	private CompiledProfile profile;
+	private CompiledProfile compiledProfile;
+	private CompiledProfile projectedProfile;
+	private CompiledRules compiledRules;
+	private String payloadJson;
+	private byte[] payloadBytes;
+	private JSONObject payloadObj;
+	private JsonNode payloadNode;
+
+	@Setup
+	public void setup() throws Exception {
+		JSONObject rulesObj = BenchmarkData.rules(rules);
+		profile = new CompiledProfile(null, rulesObj, 1);
+		ProfileOptions options = new ProfileOptions();
+		options.setCompiled(true);
+		compiledProfile = new CompiledProfile(null, rulesObj, options);
+		compiledRules = CompiledRules.compile(rulesObj);
+		ProfileOptions projectedOptions = new ProfileOptions();
+		projectedOptions.setProjected(true);
+		projectedProfile = new CompiledProfile(null, rulesObj, projectedOptions);
+		payloadJson = BenchmarkData.payload(payload, rulesObj);
+		payloadBytes = payloadJson.getBytes(StandardCharsets.UTF_8);
+		payloadObj = new JSONObject(payloadJson);
+		payloadNode = JsonNodes.parseObject(payloadBytes);
+	}
+
+	@Benchmark
+	public JSONObject parse() {
+		return new JSONObject(payloadJson);
+	}
+
+	@Benchmark
+	public JSONObject parseProjected() {
+		// Same as parse, only building the values read by the rules
+		return projectedProfile.project(payloadBytes);
+	}
+
+	@Benchmark
+	public ValidationResult validate() throws Exception {
+		return profile.validate(payloadObj);
+	}
+
+	@Benchmark
+	public JSONObject check() throws Exception {
+		return profile.check(payloadObj, false);
+	}
+
+	@Benchmark
+	public JSONObject checkCompiled() throws Exception {
+		// Same as check, with the rules compiled into closures
+		return compiledProfile.check(payloadObj, false);
+	}
+
+	@Benchmark
+	public boolean testCompiledRules() {
+		// Rules only, each distinct path of the ruleset being resolved once
+		return compiledRules.test(payloadObj);
+	}
+
+	@Benchmark
+	public JSONObject checkWithExplanation() throws Exception {
+		return profile.check(payloadObj, true);
+	}
+
+	@Benchmark
+	public String endToEnd() throws Exception {
+		// Request body to response body, as done by validate/{profile} with a cached profile
+		return profile.check(new JSONObject(payloadJson), false).toString();
+	}
+
+	@Benchmark
+	public String endToEndCompiled() throws Exception {
+		return compiledProfile.check(new JSONObject(payloadJson), false).toString();
+	}
+
+	@Benchmark
+	public String endToEndCompiledJackson() throws Exception {
+		// Same as endToEndCompiled, the body being read as a Jackson document as done by validate/{profile} for compiled rules
+		return compiledProfile.check(JsonNodes.parseObject(payloadBytes), ExplainMode.NONE, 0).toString();
+	}
+
+	@Benchmark
+	public JSONObject recordReparsed() {
+		// Stream records used to be written back to text and parsed again by org.json
+		return new JSONObject(payloadNode.toString());
+	}
+
+	@Benchmark
+	public JSONObject recordConverted() {
+		return JsonNodes.toJSONObject(payloadNode);
+	}
+
+}
@@ -0,0 +1,96 @@
+package gov.cdc.foundation;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import gov.cdc.foundation.engine.ExplanationDetails;
+import io.micrometer.core.instrument.Timer;
+
+// Writes org.json objects straight to the response body, without going through a String and a Jackson tree.
+// Explanation details are written by themselves to the body as well, org.json would build their whole text first.
+public class JSONMessageConverter extends AbstractHttpMessageConverter<Object> {
+
+	private final Timer timer;
+
+	public JSONMessageConverter(Timer timer) {
+		super(StandardCharsets.UTF_8, MediaType.APPLICATION_JSON, new MediaType("application", "*+json"));
+		this.timer = timer;
+	}
+
+	@Override
+	protected boolean supports(Class<?> clazz) {
+		return JSONObject.class.isAssignableFrom(clazz) || JSONArray.class.isAssignableFrom(clazz);
+	}
+
+	@Override
+	protected boolean canRead(MediaType mediaType) {
+		return false;
+	}
+
+	@Override
+	protected Object readInternal(Class<? extends Object> clazz, HttpInputMessage inputMessage) throws IOException {
+		throw new HttpMessageNotReadableException("Reading org.json objects is not supported", inputMessage);
+	}
+
+	@Override
+	protected void writeInternal(Object json, HttpOutputMessage outputMessage) throws IOException {
+		long start = System.nanoTime();
+		Charset charset = getContentTypeCharset(outputMessage.getHeaders().getContentType());
+		Writer writer = new BufferedWriter(new OutputStreamWriter(outputMessage.getBody(), charset));
+		writeValue(writer, json);
+		writer.flush();
+		timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+	}
+
+	private static void writeValue(Writer writer, Object value) throws IOException {
+		if (value instanceof ExplanationDetails) {
+			((ExplanationDetails) value).write(writer);
+		} else if (value instanceof ExplanationDetails.RuleBodies) {
+			((ExplanationDetails.RuleBodies) value).write(writer);
+		} else if (value instanceof JSONObject) {
+			JSONObject object = (JSONObject) value;
+			writer.write('{');
+			boolean first = true;
+			for (String key : object.keySet()) {
+				if (!first)
+					writer.write(',');
+				JSONObject.quote(key, writer);
+				writer.write(':');
+				writeValue(writer, object.opt(key));
+				first = false;
+			}
+			writer.write('}');
+		} else if (value instanceof JSONArray) {
+			JSONArray array = (JSONArray) value;
+			writer.write('[');
+			for (int i = 0; i < array.length(); i++) {
+				if (i > 0)
+					writer.write(',');
+				writeValue(writer, array.opt(i));
+			}
+			writer.write(']');
+		} else {
+			writer.write(JSONObject.valueToString(value));
+		}
+	}
+
+	private Charset getContentTypeCharset(MediaType contentType) {
+		if (contentType != null && contentType.getCharset() != null)
+			return contentType.getCharset();
+		return getDefaultCharset();
+	}
+
+}
@@ -0,0 +1,17 @@
+package gov.cdc.foundation;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import gov.cdc.foundation.helper.MetricsHelper;
+
+@Configuration
+public class MessageConverterConfiguration {
+
+	@Bean
+	public JSONMessageConverter jsonMessageConverter(MetricsHelper metrics) {
+		// Spring Boot registers converter beans ahead of the default ones
+		return new JSONMessageConverter(metrics.timer(MetricsHelper.TIMER_SERIALIZE, null));
+	}
+
+}
@@ -1,14 +1,30 @@
 package gov.cdc.foundation;
 
+import org.springframework.boot.ApplicationRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.event.ApplicationEnvironmentPreparedEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Bean;
 import org.springframework.security.oauth2.config.annotation.web.configuration.EnableResourceServer;
 
+import gov.cdc.foundation.helper.ObjectClientHelper;
+import gov.cdc.foundation.helper.WarmupHelper;
+
 @SpringBootApplication
 @EnableResourceServer
 public class RulesApplication {
 
 	public static void main(String[] args) {
-		SpringApplication.run(RulesApplication.class, args);
+		SpringApplication application = new SpringApplication(RulesApplication.class);
+		// The JDK HTTP client settings are process wide, so they are only set when the service runs on its own
+		application.addListeners((ApplicationListener<ApplicationEnvironmentPreparedEvent>) event -> ObjectClientHelper.configure(event.getEnvironment()));
+		application.run(args);
+	}
+
+	// The server is already listening, the warm-up health indicator reports it out of service until this returns
+	@Bean
+	public ApplicationRunner warmupRunner(WarmupHelper warmup) {
+		return args -> warmup.warmup();
 	}
 }
@@ -0,0 +1,29 @@
+package gov.cdc.foundation;
+
+import java.util.Map;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.stereotype.Component;
+
+import gov.cdc.foundation.helper.WarmupHelper;
+
+// Keeps the instance out of service until all the profiles are compiled, so that load balancers wait for it
+@Component
+public class WarmupHealthIndicator implements HealthIndicator {
+
+	private final WarmupHelper warmup;
+
+	public WarmupHealthIndicator(WarmupHelper warmup) {
+		this.warmup = warmup;
+	}
+
+	@Override
+	public Health health() {
+		Health.Builder builder = warmup.isReady() ? Health.up() : Health.status(Status.OUT_OF_SERVICE);
+		Map<String, Object> status = warmup.getStatus().toMap();
+		return builder.withDetails(status).build();
+	}
+
+}
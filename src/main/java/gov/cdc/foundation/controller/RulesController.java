@@ -1,15 +1,23 @@
 package gov.cdc.foundation.controller;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.regex.Pattern;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
 import org.apache.commons.io.IOUtils;
 import org.apache.log4j.Logger;
 import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
@@ -18,6 +26,7 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Controller;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
@@ -25,20 +34,29 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
-import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.JsonNode;
 
+import gov.cdc.foundation.engine.CompiledProfile;
+import gov.cdc.foundation.engine.ExplainMode;
+import gov.cdc.foundation.engine.ExplanationDetails;
+import gov.cdc.foundation.engine.JsonNodes;
+import gov.cdc.foundation.engine.MessageValidator;
+import gov.cdc.foundation.engine.ValidationStream;
+import gov.cdc.foundation.helper.ChangeNotificationHelper;
 import gov.cdc.foundation.helper.LoggerHelper;
 import gov.cdc.foundation.helper.MessageHelper;
+import gov.cdc.foundation.helper.MetricsHelper;
+import gov.cdc.foundation.helper.ProfileCacheHelper;
+import gov.cdc.foundation.helper.ResultCacheHelper;
+import gov.cdc.foundation.helper.RulesRepositoryHelper;
+import gov.cdc.foundation.helper.ValidationExecutorHelper;
 import gov.cdc.helper.ErrorHandler;
-import gov.cdc.helper.ObjectHelper;
 import gov.cdc.helper.common.ServiceException;
-import gov.cdc.engine.SimpleValidator;
-import gov.cdc.engine.ValidatorException;
-import gov.cdc.engine.result.CompoundValidationResult;
 import gov.cdc.engine.result.ValidationResult;
+import io.micrometer.core.instrument.Timer;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
 import springfox.documentation.annotations.ApiIgnore;
@@ -54,21 +72,23 @@ public class RulesController {
 	private String version;
 
 	private String profileRegex;
+	// Files of the non-streaming validate are read whole in memory, only validate/stream accepts up to the multipart limits
+	private long maxFileSize;
 
-	public RulesController(@Value("${profile.regex}") String profileRegex) {
+	public RulesController(@Value("${profile.regex}") String profileRegex, @Value("${rules.validate.max-file-size}") String maxFileSize) {
 		this.profileRegex = profileRegex;
+		this.maxFileSize = DataSize.parse(maxFileSize).toBytes();
 	}
 
 	@RequestMapping(method = RequestMethod.GET)
 	@ResponseBody
 	public ResponseEntity<?> index() throws IOException {
-		ObjectMapper mapper = new ObjectMapper();		
 		Map<String, Object> log = new HashMap<>();
 		
 		try {
 			JSONObject json = new JSONObject();
 			json.put("version", version);
-			return new ResponseEntity<>(mapper.readTree(json.toString()), HttpStatus.OK);
+			return new ResponseEntity<>(json, HttpStatus.OK);
 		} catch (Exception e) {
 			logger.error(e);
 			LoggerHelper.getInstance().log(MessageHelper.METHOD_INDEX, log);
@@ -77,15 +97,7 @@ public class RulesController {
 		}
 	}
 
-	@PreAuthorize(
-		"!@authz.isSecured()"
-		+ " or #oauth2.hasScope('fdns.rules.'.concat(#profile).concat('.create'))"
-		+ " or #oauth2.hasScope('fdns.rules.'.concat(#profile).concat('.update'))"
-		+ " or #oauth2.hasScope('fdns.rules.'.concat(#profile).concat('.*'))"
-		+ " or #oauth2.hasScope('fdns.rules.*.create')"
-		+ " or #oauth2.hasScope('fdns.rules.*.update')"
-		+ " or #oauth2.hasScope('fdns.rules.*.*')"
-	)
+	@PreAuthorize("@authz.canWrite(authentication, #profile)")
 	@RequestMapping(
 		value = "profile/{profile}",
 		method = RequestMethod.PUT,
@@ -104,15 +116,7 @@ public class RulesController {
 		return upsertRules(authorizationHeader, payload, profile);
 	}
 
-	@PreAuthorize(
-		"!@authz.isSecured()"
-		+ " or #oauth2.hasScope('fdns.rules.'.concat(#profile).concat('.create'))"
-		+ " or #oauth2.hasScope('fdns.rules.'.concat(#profile).concat('.update'))"
-		+ " or #oauth2.hasScope('fdns.rules.'.concat(#profile).concat('.*'))"
-		+ " or #oauth2.hasScope('fdns.rules.*.create')"
-		+ " or #oauth2.hasScope('fdns.rules.*.update')"
-		+ " or #oauth2.hasScope('fdns.rules.*.*')"
-	)
+	@PreAuthorize("@authz.canWrite(authentication, #profile)")
 	@RequestMapping(
 		value = "profile/{profile}",
 		method = RequestMethod.POST,
@@ -120,7 +124,7 @@ public class RulesController {
 	)
 	@ApiOperation(
 		value = "Create or update rules for the specified profile",
-		notes = "Create or update rules"
+		notes = "Create or update rules, rules the validator can't compile are rejected"
 	)
 	@ResponseBody
 	public ResponseEntity<?> upsertRules(
@@ -128,7 +132,6 @@ public class RulesController {
 		@RequestBody(required = true) String payload, 
 		@ApiParam(value = "Profile identifier") @PathVariable(value = "profile") String profile
 	) {
-		ObjectMapper mapper = new ObjectMapper();
 		Map<String, Object> log = new HashMap<>();
 		log.put(MessageHelper.CONST_METHOD, MessageHelper.METHOD_UPSERTRULES);
 
@@ -138,17 +141,18 @@ public class RulesController {
 			if (!p.matcher(profile).matches())
 				throw new ServiceException(String.format(MessageHelper.ERROR_PROFILE_IDENTIFIER_INVALID, profileRegex));
 
+			// Rules are compiled before being stored, so invalid ones are rejected and the new version is ready to validate
 			JSONObject data = new JSONObject(payload);
-			ObjectHelper helper = ObjectHelper.getInstance(authorizationHeader);
-			if (helper.exists(profile))
-				helper.updateObject(profile, data);
-			else
-				helper.createObject(data, profile);
+			CompiledProfile compiled = ProfileCacheHelper.getInstance().compileNew(profile, data);
+			int version = RulesRepositoryHelper.getInstance().save(authorizationHeader, profile, data);
+			ProfileCacheHelper.getInstance().publish(profile, compiled, version);
+			ChangeNotificationHelper.getInstance().publish(profile, version);
 
 			JSONObject json = new JSONObject();
 			json.put(MessageHelper.CONST_SUCCESS, true);
 			json.put(MessageHelper.CONST_PROFILE, profile);
-			return new ResponseEntity<>(mapper.readTree(json.toString()), HttpStatus.OK);
+			json.put(MessageHelper.CONST_VERSION, version);
+			return new ResponseEntity<>(json, HttpStatus.OK);
 
 		} catch (Exception e) {
 			logger.error(e);
@@ -159,13 +163,7 @@ public class RulesController {
 
 	}
 
-	@PreAuthorize(
-		"!@authz.isSecured()"
-		+ " or #oauth2.hasScope('fdns.rules.'.concat(#profile).concat('.read'))"
-		+ " or #oauth2.hasScope('fdns.rules.'.concat(#profile).concat('.*'))"
-		+ " or #oauth2.hasScope('fdns.rules.*.read')"
-		+ " or #oauth2.hasScope('fdns.rules.*.*')"
-	)
+	@PreAuthorize("@authz.canRead(authentication, #profile)")
 	@RequestMapping(
 		value = "profile/{profile}",
 		method = RequestMethod.GET,
@@ -178,20 +176,20 @@ public class RulesController {
 	@ResponseBody
 	public ResponseEntity<?> getRules(
 		@ApiIgnore @RequestHeader(value = "Authorization", required = false) String authorizationHeader,
-		@ApiParam(value = "Profile identifier") @PathVariable(value = "profile") String profile
+		@ApiParam(value = "Profile identifier") @PathVariable(value = "profile") String profile,
+		@ApiParam(value = "Rules version, defaults to the latest one") @RequestParam(required = false) Integer version
 	) {
-		ObjectMapper mapper = new ObjectMapper();
 		Map<String, Object> log = new HashMap<>();
 		log.put(MessageHelper.CONST_METHOD, MessageHelper.METHOD_GETRULES);
 
 		try {
-			String objectId = profile;
-
-			ObjectHelper helper = ObjectHelper.getInstance(authorizationHeader);
-			if (!helper.exists(objectId))
+			JSONObject rules = RulesRepositoryHelper.getInstance().get(authorizationHeader, profile, version);
+			if (rules == null && version != null)
+				throw new ServiceException(String.format(MessageHelper.ERROR_VERSION_DOESNT_EXIST, version));
+			if (rules == null)
 				throw new ServiceException(MessageHelper.ERROR_PROFILE_DOESNT_EXIST);
 
-			return new ResponseEntity<>(mapper.readTree(helper.getObject(objectId).toString()), HttpStatus.OK);
+			return new ResponseEntity<>(rules, HttpStatus.OK);
 
 		} catch (Exception e) {
 			logger.error(e);
@@ -202,13 +200,89 @@ public class RulesController {
 
 	}
 
-	@PreAuthorize(
-		"!@authz.isSecured()"
-		+ " or #oauth2.hasScope('fdns.rules.'.concat(#profile).concat('.read'))"
-		+ " or #oauth2.hasScope('fdns.rules.'.concat(#profile).concat('.*'))"
-		+ " or #oauth2.hasScope('fdns.rules.*.read')"
-		+ " or #oauth2.hasScope('fdns.rules.*.*')"
+	@PreAuthorize("@authz.canRead(authentication, '*')")
+	@RequestMapping(
+		value = "cache",
+		method = RequestMethod.GET,
+		produces = MediaType.APPLICATION_JSON_VALUE
+	)
+	@ApiOperation(
+		value = "Get profile cache statistics",
+		notes = "Get hit, miss and eviction counters of the compiled profiles cache and of the validation results cache"
+	)
+	@ResponseBody
+	public ResponseEntity<?> getCacheStats() {
+		Map<String, Object> log = new HashMap<>();
+		log.put(MessageHelper.CONST_METHOD, MessageHelper.METHOD_GETCACHESTATS);
+
+		try {
+			JSONObject stats = ProfileCacheHelper.getInstance().getStats();
+			stats.put("results", ResultCacheHelper.getInstance().getStats());
+			return new ResponseEntity<>(stats, HttpStatus.OK);
+		} catch (Exception e) {
+			logger.error(e);
+			LoggerHelper.getInstance().log(MessageHelper.METHOD_GETCACHESTATS, log);
+
+			return ErrorHandler.getInstance().handle(e, log);
+		}
+	}
+
+	@PreAuthorize("@authz.canRead(authentication, '*')")
+	@RequestMapping(
+		value = "stats/{profile}",
+		method = RequestMethod.GET,
+		produces = MediaType.APPLICATION_JSON_VALUE
+	)
+	@ApiOperation(
+		value = "Get rule statistics for the specified profile",
+		notes = "Get the evaluation time and failure rate of each segment of the profile compiled on this instance, in the order they are run"
+	)
+	@ResponseBody
+	public ResponseEntity<?> getStatistics(
+		@ApiParam(value = "Profile identifier") @PathVariable(value = "profile") String profile
+	) {
+		Map<String, Object> log = new HashMap<>();
+		log.put(MessageHelper.CONST_METHOD, MessageHelper.METHOD_GETSTATISTICS);
+
+		try {
+			// Statistics are collected on the compiled profile, they start over when it is compiled again.
+			// Profiles are never loaded here, so that asking for statistics doesn't fetch nor compile anything.
+			CompiledProfile rules = ProfileCacheHelper.getInstance().getCached(profile);
+			if (rules == null)
+				throw new ServiceException(MessageHelper.ERROR_PROFILE_NOT_CACHED);
+
+			return new ResponseEntity<>(rules.getStatistics(), HttpStatus.OK);
+		} catch (Exception e) {
+			logger.error(e);
+			LoggerHelper.getInstance().log(MessageHelper.METHOD_GETSTATISTICS, log);
+
+			return ErrorHandler.getInstance().handle(e, log);
+		}
+	}
+
+	@PreAuthorize("@authz.canRead(authentication, '*')")
+	@RequestMapping(
+		value = ChangeNotificationHelper.WATCH_PATH,
+		method = RequestMethod.GET,
+		produces = MediaType.TEXT_EVENT_STREAM_VALUE
+	)
+	@ApiOperation(
+		value = "Watch profile changes",
+		notes = "Server-sent events stream, a ready event is sent on connection then a change event for every profile update made on this instance"
 	)
+	@ResponseBody
+	public SseEmitter watch() throws IOException {
+		Map<String, Object> log = new HashMap<>();
+		log.put(MessageHelper.CONST_METHOD, MessageHelper.METHOD_WATCH);
+
+		SseEmitter emitter = ChangeNotificationHelper.getInstance().subscribe();
+
+		log.put(MessageHelper.CONST_SUCCESS, true);
+		LoggerHelper.getInstance().log(MessageHelper.METHOD_WATCH, log);
+		return emitter;
+	}
+
+	@PreAuthorize("@authz.canRead(authentication, #profile)")
 	@RequestMapping(
 		value = "validate/{profile}",
 		method = RequestMethod.POST,
@@ -222,50 +296,141 @@ public class RulesController {
 	@ResponseBody
 	public ResponseEntity<?> validate(
 			@ApiIgnore @RequestHeader(value = "Authorization", required = false) String authorizationHeader,
-			@RequestBody(required = true) String payload, 
+			@RequestBody(required = true) byte[] payload, 
 			@ApiParam(value = "Profile identifier") @PathVariable(value = "profile") String profile, 
-			@RequestParam(defaultValue = "false") boolean explain) {
-		ObjectMapper mapper = new ObjectMapper();
-
+			@ApiParam(value = "Rules version, defaults to the latest one") @RequestParam(required = false) Integer version,
+			@ApiParam(value = "Explain mode: true (or full), failuresOnly, idsOnly or compact") @RequestParam(defaultValue = "false") String explain,
+			@ApiParam(value = "Validation mode, failFast stops at the first failing rule") @RequestParam(required = false) String mode,
+			@ApiParam(value = "Stops the validation once this number of rules failed") @RequestParam(defaultValue = "0") int maxErrors) {
 		Map<String, Object> log = new HashMap<>();
 		log.put(MessageHelper.CONST_METHOD, MessageHelper.METHOD_VALIDATE);
 
 		try {
-			// Get the json object
-			JSONObject json = new JSONObject(payload);
-			JSONArray explainationDetails = new JSONArray();
-			JSONObject responseObj = new JSONObject();
-
-			// Get the rules config
-			JSONObject rules = null;
-			try {
-				rules = ObjectHelper.getInstance(authorizationHeader).getObject(profile);
-				rules.remove("_id");
-			} catch (ResourceAccessException e) {
-				throw new ServiceException(e);
-			} catch (Exception e) {
-				logger.error(e);
+			// Get the compiled rules config
+			CompiledProfile rules = getCompiledProfile(authorizationHeader, profile, version);
+			ExplainMode explainMode = getExplainMode(explain);
+			int errorsLimit = getMaxErrors(mode, maxErrors);
+
+			// The same payload validated again with the same rules gets the stored response, without being parsed
+			ResultCacheHelper results = ResultCacheHelper.getInstance();
+			ResultCacheHelper.Key key = rules != null && results.isEnabled() ? results.key(rules, payload, explainMode, errorsLimit) : null;
+			ResultCacheHelper.Result cached = key != null ? results.get(key) : null;
+			if (cached != null) {
+				MetricsHelper.getInstance().countMessage(rules.getProfile(), cached.isValid());
+				log.put(MessageHelper.CONST_SUCCESS, true);
+				log.put(MessageHelper.CONST_VALID, cached.isValid());
+				log.put(MessageHelper.CONST_ERRORS, cached.getErrors());
+				LoggerHelper.getInstance().log(MessageHelper.METHOD_VALIDATE, log);
+
+				return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(cached.getBody());
 			}
 
-			// Let's check validate the message
-			int nbOfErrors = checkValidationRules(json, rules, explain, explainationDetails);
+			// Get the json object, only the values read by the rules when the profile is projected.
+			// Jackson documents are only worth it when compiled rules can accept them, otherwise they would be converted to org.json.
+			JSONObject projected = rules != null ? rules.project(payload) : null;
+			JsonNode json = projected == null && rules != null && rules.isCompiled() ? JsonNodes.parseObject(payload) : null;
+
+			// Let's check validate the message, org.json also gives the same errors as before for invalid messages
+			JSONObject responseObj;
+			if (projected != null)
+				responseObj = validateMessage(projected, rules, explainMode, errorsLimit);
+			else if (json != null)
+				responseObj = validateMessage(json, rules, explainMode, errorsLimit);
+			else
+				responseObj = validateMessage(new JSONObject(new String(payload, StandardCharsets.UTF_8)), rules, explainMode, errorsLimit);
+
+			log.put(MessageHelper.CONST_SUCCESS, true);
+			log.put(MessageHelper.CONST_VALID, responseObj.getBoolean(MessageHelper.CONST_VALID));
+			log.put(MessageHelper.CONST_ERRORS, responseObj.getInt(MessageHelper.CONST_ERRORS));
+			LoggerHelper.getInstance().log(MessageHelper.METHOD_VALIDATE, log);
 
-			responseObj.put(MessageHelper.CONST_VALID, nbOfErrors == 0);
-			responseObj.put("errors", nbOfErrors);
+			// The response is written once, for the client and the cache
+			if (key != null)
+				return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(results.put(key, responseObj).getBody());
+			return new ResponseEntity<>(responseObj, HttpStatus.OK);
+		} catch (Exception e) {
+			logger.error(e);
+			LoggerHelper.getInstance().log(MessageHelper.METHOD_VALIDATE, log);
 
-			if (explain) {
-				responseObj.put("details", explainationDetails);
+			return ErrorHandler.getInstance().handle(e, log);
+		}
+	}
+
+	@PreAuthorize("@authz.canRead(authentication, #profile)")
+	@RequestMapping(
+		value = "validate/{profile}/batch",
+		method = RequestMethod.POST,
+		produces = MediaType.APPLICATION_JSON_VALUE,
+		consumes = { MediaType.APPLICATION_JSON_VALUE, MessageHelper.MEDIA_TYPE_NDJSON }
+	)
+	@ApiOperation(
+		value = "Validate a batch of JSON messages",
+		notes = "Validates a JSON array or NDJSON list of objects with a stored configuration, results are returned in input order."
+	)
+	@ResponseBody
+	public ResponseEntity<?> validateBatch(
+			@ApiIgnore @RequestHeader(value = "Authorization", required = false) String authorizationHeader,
+			@ApiIgnore @RequestHeader(value = "Content-Type", required = false) String contentType,
+			@RequestBody(required = true) String payload, 
+			@ApiParam(value = "Profile identifier") @PathVariable(value = "profile") String profile, 
+			@ApiParam(value = "Rules version, defaults to the latest one") @RequestParam(required = false) Integer version,
+			@ApiParam(value = "Explain mode: true (or full), failuresOnly, idsOnly or compact") @RequestParam(defaultValue = "false") String explain,
+			@ApiParam(value = "Validation mode, failFast stops at the first failing rule") @RequestParam(required = false) String mode,
+			@ApiParam(value = "Stops the validation once this number of rules failed") @RequestParam(defaultValue = "0") int maxErrors) {
+		Map<String, Object> log = new HashMap<>();
+		log.put(MessageHelper.CONST_METHOD, MessageHelper.METHOD_VALIDATEBATCH);
+
+		try {
+			// Get the list of messages
+			List<String> messages = splitBatch(payload, contentType);
+
+			// Get the compiled rules config, only once for the whole batch
+			CompiledProfile rules = getCompiledProfile(authorizationHeader, profile, version);
+
+			// Let's check validate the messages, in parallel when workers are available
+			ExplainMode explainMode = getExplainMode(explain);
+			int errorsLimit = getMaxErrors(mode, maxErrors);
+			List<Callable<JSONObject>> tasks = new ArrayList<>(messages.size());
+			for (String message : messages)
+				tasks.add(() -> {
+					try {
+						return validateMessage(new JSONObject(message), rules, explainMode, errorsLimit);
+					} catch (JSONException e) {
+						JSONObject result = new JSONObject();
+						result.put(MessageHelper.CONST_VALID, false);
+						result.put(MessageHelper.CONST_ERROR, e.getMessage());
+						return result;
+					}
+				});
+
+			JSONArray results = new JSONArray();
+			int nbOfValid = 0;
+			for (JSONObject result : ValidationExecutorHelper.getInstance().validateAll(tasks)) {
+				if (result.getBoolean(MessageHelper.CONST_VALID))
+					nbOfValid++;
+				results.put(result);
 			}
 
+			JSONObject responseObj = new JSONObject();
+			responseObj.put(MessageHelper.CONST_PROFILE, profile);
+			if (rules != null)
+				responseObj.put(MessageHelper.CONST_VERSION, rules.getVersion());
+			responseObj.put(MessageHelper.CONST_TOTAL, messages.size());
+			// Same meaning as for a single message, the counts have their own fields
+			responseObj.put(MessageHelper.CONST_VALID, nbOfValid == messages.size());
+			responseObj.put(MessageHelper.CONST_NB_OF_VALID, nbOfValid);
+			responseObj.put(MessageHelper.CONST_NB_OF_INVALID, messages.size() - nbOfValid);
+			responseObj.put(MessageHelper.CONST_RESULTS, results);
+
 			log.put(MessageHelper.CONST_SUCCESS, true);
-			log.put(MessageHelper.CONST_VALID, nbOfErrors == 0);
-			log.put("errors", nbOfErrors);
-			LoggerHelper.getInstance().log(MessageHelper.METHOD_VALIDATE, log);
+			log.put(MessageHelper.CONST_TOTAL, messages.size());
+			log.put(MessageHelper.CONST_NB_OF_VALID, nbOfValid);
+			LoggerHelper.getInstance().log(MessageHelper.METHOD_VALIDATEBATCH, log);
 
-			return new ResponseEntity<>(mapper.readTree(responseObj.toString()), HttpStatus.OK);
+			return new ResponseEntity<>(responseObj, HttpStatus.OK);
 		} catch (Exception e) {
 			logger.error(e);
-			LoggerHelper.getInstance().log(MessageHelper.METHOD_VALIDATE, log);
+			LoggerHelper.getInstance().log(MessageHelper.METHOD_VALIDATEBATCH, log);
 
 			return ErrorHandler.getInstance().handle(e, log);
 		}
@@ -284,37 +449,32 @@ public class RulesController {
 	public ResponseEntity<?> validate(
 		@ApiParam(value = "JSON file to validate") @RequestParam("json") MultipartFile json,
 		@ApiParam(value = "Rules configuration") @RequestParam("rules") MultipartFile rules,
-		@RequestParam(defaultValue = "false") boolean explain
+		@ApiParam(value = "Explain mode: true (or full), failuresOnly, idsOnly or compact") @RequestParam(defaultValue = "false") String explain,
+		@ApiParam(value = "Validation mode, failFast stops at the first failing rule") @RequestParam(required = false) String mode,
+		@ApiParam(value = "Stops the validation once this number of rules failed") @RequestParam(defaultValue = "0") int maxErrors
 	) {
-		ObjectMapper mapper = new ObjectMapper();
 		Map<String, Object> log = new HashMap<>();
 		log.put(MessageHelper.CONST_METHOD, MessageHelper.METHOD_VALIDATE);
 
 		try {
+			checkFileSize(json);
+			checkFileSize(rules);
+
 			// Get the json version
 			JSONObject jsonObj = new JSONObject(IOUtils.toString(json.getInputStream(), Charset.defaultCharset()));
-			JSONArray explainationDetails = new JSONArray();
-			JSONObject responseObj = new JSONObject();
 
 			// Get the rules configuration
-			JSONObject rulesObj = new JSONObject(IOUtils.toString(rules.getInputStream(), Charset.defaultCharset()));
+			CompiledProfile rulesObj = ProfileCacheHelper.getInstance().compile(null, new JSONObject(IOUtils.toString(rules.getInputStream(), Charset.defaultCharset())));
 
 			// Let's check validate the message
-			int nbOfErrors = checkValidationRules(jsonObj, rulesObj, explain, explainationDetails);
-
-			responseObj.put(MessageHelper.CONST_VALID, nbOfErrors == 0);
-			responseObj.put("errors", nbOfErrors);
-
-			if (explain) {
-				responseObj.put("details", explainationDetails);
-			}
+			JSONObject responseObj = validateMessage(jsonObj, rulesObj, getExplainMode(explain), getMaxErrors(mode, maxErrors));
 
 			log.put(MessageHelper.CONST_SUCCESS, true);
-			log.put(MessageHelper.CONST_VALID, nbOfErrors == 0);
-			log.put("errors", nbOfErrors);
+			log.put(MessageHelper.CONST_VALID, responseObj.getBoolean(MessageHelper.CONST_VALID));
+			log.put(MessageHelper.CONST_ERRORS, responseObj.getInt(MessageHelper.CONST_ERRORS));
 			LoggerHelper.getInstance().log(MessageHelper.METHOD_VALIDATE, log);
 
-			return new ResponseEntity<>(mapper.readTree(responseObj.toString()), HttpStatus.OK);
+			return new ResponseEntity<>(responseObj, HttpStatus.OK);
 		} catch (Exception e) {
 			logger.error(e);
 			LoggerHelper.getInstance().log(MessageHelper.METHOD_VALIDATE, log);
@@ -323,55 +483,185 @@ public class RulesController {
 		}
 	}
 
-	private int checkValidationRules(JSONObject payload, JSONObject rules, boolean explain, JSONArray explainationDetails) throws ServiceException, ValidatorException {
-		int nbOfInvalidItems = 0;
+	@PreAuthorize("@authz.canRead(authentication, #profile)")
+	@RequestMapping(
+		value = "validate/{profile}/stream",
+		method = RequestMethod.POST,
+		produces = MessageHelper.MEDIA_TYPE_NDJSON,
+		consumes = { MediaType.APPLICATION_JSON_VALUE, MessageHelper.MEDIA_TYPE_NDJSON }
+	)
+	@ApiOperation(
+		value = "Validate a stream of JSON messages",
+		notes = "Validates a JSON array or NDJSON stream of objects with a stored configuration, results are streamed back as NDJSON."
+	)
+	@ResponseBody
+	public ResponseEntity<?> validateStream(
+			@ApiIgnore @RequestHeader(value = "Authorization", required = false) String authorizationHeader,
+			@ApiParam(value = "Profile identifier") @PathVariable(value = "profile") String profile, 
+			@ApiParam(value = "Rules version, defaults to the latest one") @RequestParam(required = false) Integer version,
+			@ApiParam(value = "Explain mode: true (or full), failuresOnly, idsOnly or compact") @RequestParam(defaultValue = "false") String explain,
+			@ApiParam(value = "Validation mode, failFast stops at the first failing rule") @RequestParam(required = false) String mode,
+			@ApiParam(value = "Stops the validation once this number of rules failed") @RequestParam(defaultValue = "0") int maxErrors,
+			@ApiIgnore HttpServletRequest request,
+			@ApiIgnore HttpServletResponse response) {
+		Map<String, Object> log = new HashMap<>();
+		log.put(MessageHelper.CONST_METHOD, MessageHelper.METHOD_VALIDATESTREAM);
 
-		List<ValidationResult> vrList = executeRules(payload, rules);
-		if (vrList != null)
-			for (ValidationResult vrItem : vrList) {
-				if (!vrItem.isValid())
-					nbOfInvalidItems++;
-				if (explain)
-					explainationDetails.put(createExplanationDetail(vrItem));
-			}
+		try {
+			// Get the compiled rules config, only once for the whole stream
+			CompiledProfile rules = getCompiledProfile(authorizationHeader, profile, version);
 
-		return nbOfInvalidItems;
+			streamValidation(request.getInputStream(), rules, getExplainMode(explain), getMaxErrors(mode, maxErrors), response, log);
+			return null;
+		} catch (Exception e) {
+			logger.error(e);
+			LoggerHelper.getInstance().log(MessageHelper.METHOD_VALIDATESTREAM, log);
+
+			return ErrorHandler.getInstance().handle(e, log);
+		}
 	}
 
-	private JSONObject createExplanationDetail(ValidationResult vr) {
-		JSONObject detail = new JSONObject();
-		detail.put("ID", vr.getDescription());
-		detail.put("title", vr.getComment());
-		detail.put("command", vr.getCommand());
-		if (vr.getRule() != null)
-			detail.put("rule", new JSONObject(vr.getRule()));
-		detail.put("passed", vr.isValid());
-		return detail;
+	@RequestMapping(
+		value = "validate/stream",
+		method = RequestMethod.POST,
+		produces = MessageHelper.MEDIA_TYPE_NDJSON,
+		consumes = MediaType.MULTIPART_FORM_DATA_VALUE
+	)
+	@ApiOperation(
+		value = "Validate a stream of JSON messages",
+		notes = "Validates a JSON array or NDJSON file of objects with a provided configuration, results are streamed back as NDJSON."
+	)
+	@ResponseBody
+	public ResponseEntity<?> validateStream(
+		@ApiParam(value = "JSON array or NDJSON file to validate") @RequestParam("json") MultipartFile json,
+		@ApiParam(value = "Rules configuration") @RequestParam("rules") MultipartFile rules,
+		@ApiParam(value = "Explain mode: true (or full), failuresOnly, idsOnly or compact") @RequestParam(defaultValue = "false") String explain,
+		@ApiParam(value = "Validation mode, failFast stops at the first failing rule") @RequestParam(required = false) String mode,
+		@ApiParam(value = "Stops the validation once this number of rules failed") @RequestParam(defaultValue = "0") int maxErrors,
+		@ApiIgnore HttpServletResponse response
+	) {
+		Map<String, Object> log = new HashMap<>();
+		log.put(MessageHelper.CONST_METHOD, MessageHelper.METHOD_VALIDATESTREAM);
+
+		try {
+			// Get the rules configuration
+			CompiledProfile rulesObj = ProfileCacheHelper.getInstance().compile(null, new JSONObject(IOUtils.toString(rules.getInputStream(), Charset.defaultCharset())));
+
+			streamValidation(json.getInputStream(), rulesObj, getExplainMode(explain), getMaxErrors(mode, maxErrors), response, log);
+			return null;
+		} catch (Exception e) {
+			logger.error(e);
+			LoggerHelper.getInstance().log(MessageHelper.METHOD_VALIDATESTREAM, log);
+
+			return ErrorHandler.getInstance().handle(e, log);
+		}
 	}
 
-	private List<ValidationResult> executeRules(JSONObject payload, JSONObject rules) throws ServiceException, ValidatorException {
-		List<ValidationResult> checkList = null;
-		if (rules != null) {
-			// Then, check the JSON Object
-			ValidationResult vr = applyRules(payload, rules);
+	private void checkFileSize(MultipartFile file) throws ServiceException {
+		if (maxFileSize >= 0 && file.getSize() > maxFileSize)
+			throw new ServiceException(String.format(MessageHelper.ERROR_FILE_TOO_LARGE, file.getName(), maxFileSize));
+	}
+
+	private CompiledProfile getCompiledProfile(String authorizationHeader, String profile, Integer version) throws ServiceException {
+		CompiledProfile rules = ProfileCacheHelper.getInstance().get(authorizationHeader, profile, version);
+		// Profiles without rules accept everything, but a pinned version must exist
+		if (rules == null && version != null)
+			throw new ServiceException(String.format(MessageHelper.ERROR_VERSION_DOESNT_EXIST, version));
+		return rules;
+	}
+
+	private void streamValidation(InputStream in, CompiledProfile rules, ExplainMode explain, int maxErrors, HttpServletResponse response, Map<String, Object> log) throws IOException {
+		response.setStatus(HttpStatus.OK.value());
+		response.setContentType(MessageHelper.MEDIA_TYPE_NDJSON);
+
+		// Records are already Jackson documents, they are only converted when the compiled rules don't accept them
+		ValidationStream stream = ValidationExecutorHelper.getInstance().newStream(new MessageValidator() {
 
-			if (vr instanceof CompoundValidationResult) {
-				CompoundValidationResult cvr = (CompoundValidationResult) vr;
-				checkList = cvr.flatten();
+			@Override
+			public JSONObject validate(JSONObject message) throws ServiceException {
+				return validateMessage(message, rules, explain, maxErrors);
 			}
 
+			@Override
+			public JSONObject validate(JsonNode message) throws ServiceException {
+				return validateMessage(message, rules, explain, maxErrors);
+			}
+
+		});
+		try (InputStream input = in) {
+			stream.process(input, response.getOutputStream());
 		}
-		return checkList;
+
+		log.put(MessageHelper.CONST_SUCCESS, true);
+		log.put(MessageHelper.CONST_TOTAL, stream.getTotal());
+		log.put(MessageHelper.CONST_VALID, stream.getValid());
+		LoggerHelper.getInstance().log(MessageHelper.METHOD_VALIDATESTREAM, log);
 	}
 
-	public ValidationResult applyRules(JSONObject object, JSONObject rules) throws ServiceException {
-		try {
-			SimpleValidator v = new SimpleValidator();
-			v.initialize(rules);
-			return v.validate(object);
-		} catch (ValidatorException e) {
-			throw new ServiceException(e);
+	private List<String> splitBatch(String payload, String contentType) {
+		List<String> messages = new ArrayList<>();
+		if (contentType != null && MediaType.parseMediaType(contentType).isCompatibleWith(MediaType.valueOf(MessageHelper.MEDIA_TYPE_NDJSON))) {
+			// One JSON object per line, blank lines are ignored
+			for (String line : payload.split("\\r?\\n"))
+				if (line.trim().length() > 0)
+					messages.add(line);
+		} else {
+			JSONArray array = new JSONArray(payload);
+			for (int i = 0; i < array.length(); i++)
+				messages.add(array.get(i).toString());
+		}
+		return messages;
+	}
+
+	private int getMaxErrors(String mode, int maxErrors) throws ServiceException {
+		if (mode == null)
+			return Math.max(0, maxErrors);
+		if (!MessageHelper.MODE_FAIL_FAST.equals(mode))
+			throw new ServiceException(String.format(MessageHelper.ERROR_VALIDATION_MODE_INVALID, MessageHelper.MODE_FAIL_FAST));
+		return maxErrors > 0 ? maxErrors : 1;
+	}
+
+	private ExplainMode getExplainMode(String explain) throws ServiceException {
+		ExplainMode explainMode = ExplainMode.parse(explain);
+		if (explainMode == null) {
+			List<String> values = new ArrayList<>();
+			for (ExplainMode value : ExplainMode.values())
+				values.add(value.getValue());
+			throw new ServiceException(String.format(MessageHelper.ERROR_EXPLAIN_MODE_INVALID, String.join(", ", values)));
 		}
+		return explainMode;
+	}
+
+	private JSONObject validateMessage(JSONObject payload, CompiledProfile rules, ExplainMode explain, int maxErrors) throws ServiceException {
+		// Without rules, there is nothing to check
+		if (rules == null)
+			return withoutRules(explain, maxErrors);
+
+		Timer.Sample sample = MetricsHelper.getInstance().start();
+		return measured(rules, sample, rules.check(payload, explain, maxErrors));
+	}
+
+	private JSONObject validateMessage(JsonNode payload, CompiledProfile rules, ExplainMode explain, int maxErrors) throws ServiceException {
+		if (rules == null)
+			return withoutRules(explain, maxErrors);
+
+		Timer.Sample sample = MetricsHelper.getInstance().start();
+		return measured(rules, sample, rules.check(payload, explain, maxErrors));
+	}
+
+	private JSONObject withoutRules(ExplainMode explain, int maxErrors) {
+		return CompiledProfile.createResponse(0, explain != ExplainMode.NONE && maxErrors == 0 ? new ExplanationDetails(explain, null) : null);
+	}
+
+	private JSONObject measured(CompiledProfile rules, Timer.Sample sample, JSONObject result) {
+		MetricsHelper metrics = MetricsHelper.getInstance();
+		metrics.stop(sample, MetricsHelper.TIMER_VALIDATE, rules.getProfile());
+		metrics.countMessage(rules.getProfile(), result.getBoolean(MessageHelper.CONST_VALID));
+		return result;
+	}
+
+	public ValidationResult applyRules(JSONObject object, JSONObject rules) throws ServiceException {
+		return new CompiledProfile(null, rules, 1).validate(object);
 	}
 
 }
\ No newline at end of file
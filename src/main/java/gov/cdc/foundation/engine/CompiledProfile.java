@@ -0,0 +1,369 @@
+package gov.cdc.foundation.engine;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import gov.cdc.engine.ValidatorException;
+import gov.cdc.engine.result.CompoundValidationResult;
+import gov.cdc.engine.result.ValidationResult;
+import gov.cdc.foundation.helper.MessageHelper;
+import gov.cdc.helper.common.ServiceException;
+
+public class CompiledProfile {
+
+	// Segments are ranked again every RANKING_INTERVAL messages validated segment by segment
+	private static final long RANKING_INTERVAL = 1000;
+	// Sample rate of the profiles that reorder their segments, when none is configured
+	private static final int REORDER_SAMPLE_RATE = 100;
+
+	private final String profile;
+	private final ValidatorPool validators;
+	private final ProfileOptions options;
+	private final long compiledAt;
+	private final AtomicLong segmentChecks = new AtomicLong();
+	private final Map<String, String> ruleReferences = new ConcurrentHashMap<>();
+	private int version;
+	private volatile boolean reorder;
+	private volatile CompiledRules compiledRules;
+	private final Projection projection;
+	private RuleFailureListener failureListener;
+	private volatile List<RuleSegment> segments;
+	private volatile List<RuleSegment> ranked;
+	private volatile String fingerprint;
+
+	public CompiledProfile(String profile, JSONObject rules, int poolSize) throws ServiceException {
+		this(profile, rules, defaultOptions(poolSize));
+	}
+
+	public CompiledProfile(String profile, JSONObject rules, ProfileOptions options) throws ServiceException {
+		this.profile = profile;
+		this.options = options;
+		this.reorder = options.isReorder();
+		try {
+			this.validators = new ValidatorPool(rules, options.getPoolSize(), options.getValidatorFactory());
+		} catch (ValidatorException e) {
+			throw new ServiceException(e);
+		}
+
+		if (options.isCompiled())
+			this.compiledRules = CompiledRules.compile(rules);
+		this.projection = options.isProjected() ? Projection.of(rules) : null;
+		this.compiledAt = System.currentTimeMillis();
+	}
+
+	private static ProfileOptions defaultOptions(int poolSize) {
+		ProfileOptions options = new ProfileOptions();
+		options.setPoolSize(poolSize);
+		return options;
+	}
+
+	public String getProfile() {
+		return profile;
+	}
+
+	public JSONObject getRules() {
+		return validators.getRules();
+	}
+
+	// Hash of the rules, whatever their version number
+	public String getFingerprint() {
+		String result = fingerprint;
+		if (result == null)
+			fingerprint = result = ExplanationDetails.reference(getRules().toString());
+		return result;
+	}
+
+	public ProfileOptions getOptions() {
+		return options;
+	}
+
+	public long getCompiledAt() {
+		return compiledAt;
+	}
+
+	// 0 when the rules were not versioned
+	public int getVersion() {
+		return version;
+	}
+
+	public void setVersion(int version) {
+		this.version = version;
+	}
+
+	public boolean isReorder() {
+		return reorder;
+	}
+
+	// Overrides the default of the options for this profile
+	public void setReorder(boolean reorder) {
+		this.reorder = reorder;
+		if (!reorder)
+			ranked = null;
+	}
+
+	public boolean isCompiled() {
+		return compiledRules != null;
+	}
+
+	// Overrides the default of the options for this profile, rulesets that can't be compiled stay interpreted
+	public void setCompiled(boolean compiled) {
+		this.compiledRules = compiled ? CompiledRules.compile(getRules()) : null;
+	}
+
+	public boolean isProjected() {
+		return projection != null;
+	}
+
+	// Message parsed with the paths read by the rules only, null when the profile isn't projected or the message isn't a valid JSON object
+	public JSONObject project(byte[] payload) {
+		return projection != null ? projection.parse(payload) : null;
+	}
+
+	public void setFailureListener(RuleFailureListener failureListener) {
+		this.failureListener = failureListener;
+	}
+
+	public ValidationResult validate(JSONObject payload) throws ServiceException {
+		try {
+			return validators.validate(payload);
+		} catch (ValidatorException e) {
+			throw new ServiceException(e);
+		}
+	}
+
+	public JSONObject check(JSONObject payload, boolean explain) throws ServiceException {
+		return check(payload, explain, 0);
+	}
+
+	public JSONObject check(JSONObject payload, boolean explain, int maxErrors) throws ServiceException {
+		return check(payload, explain ? ExplainMode.FULL : ExplainMode.NONE, maxErrors);
+	}
+
+	// When maxErrors is positive, the validation stops as soon as maxErrors rules failed, without building any explanation
+	public JSONObject check(JSONObject payload, ExplainMode explain, int maxErrors) throws ServiceException {
+		// The compiled rules only accept messages, so messages they reject get their results from the validator
+		CompiledRules accepting = compiledRules;
+		ExplainMode details = maxErrors <= 0 ? explain : ExplainMode.NONE;
+		if (accepting != null && !details.hasPassedRules() && accepting.test(payload))
+			return createResponse(0, newExplanation(details));
+
+		if (maxErrors <= 0 && !isSampled(explain)) {
+			ExplanationDetails explainationDetails = newExplanation(explain);
+			int nbOfErrors = checkValidationRules(payload, explainationDetails);
+			return createResponse(nbOfErrors, explainationDetails);
+		}
+
+		try {
+			return checkSegments(payload, maxErrors <= 0 ? explain : ExplainMode.NONE, maxErrors > 0 ? maxErrors : Integer.MAX_VALUE);
+		} catch (ValidatorException e) {
+			throw new ServiceException(e);
+		}
+	}
+
+	// Messages accepted by the compiled rules are never converted, the other ones go through the validator as org.json objects
+	public JSONObject check(JsonNode payload, ExplainMode explain, int maxErrors) throws ServiceException {
+		CompiledRules accepting = compiledRules;
+		ExplainMode details = maxErrors <= 0 ? explain : ExplainMode.NONE;
+		if (accepting != null && !details.hasPassedRules() && accepting.test(payload))
+			return createResponse(0, newExplanation(details));
+		return check(JsonNodes.toJSONObject(payload), explain, maxErrors);
+	}
+
+	// Details are only kept as validation results until the response is written, null without explanation
+	private ExplanationDetails newExplanation(ExplainMode explain) {
+		return explain != ExplainMode.NONE ? new ExplanationDetails(explain, ruleReferences) : null;
+	}
+
+	public List<RuleSegment> getSegments() throws ServiceException {
+		// Segments are only built when needed, most profiles are only validated as a whole
+		List<RuleSegment> result = segments;
+		if (result == null)
+			synchronized (this) {
+				result = segments;
+				if (result == null)
+					try {
+						segments = result = RuleSegment.split(getRules(), options.getSegmentOperators(), options.getPoolSize(), options.getValidatorFactory());
+					} catch (ValidatorException e) {
+						throw new ServiceException(e);
+					}
+			}
+		return result;
+	}
+
+	// Ranked by cost per rejection when reordering is on and enough statistics were collected
+	public List<RuleSegment> getOrderedSegments() throws ServiceException {
+		List<RuleSegment> result = ranked;
+		return result != null ? result : getSegments();
+	}
+
+	// Segments that were never built have no statistics, they are not built here
+	public JSONObject getStatistics() throws ServiceException {
+		JSONArray list = new JSONArray();
+		List<RuleSegment> built = ranked != null ? ranked : segments;
+		for (RuleSegment segment : built != null ? built : Collections.<RuleSegment>emptyList()) {
+			JSONObject item = segment.getStats().toJSON();
+			item.put("operator", segment.getOperator());
+			item.put("path", segment.getPath());
+			list.put(item);
+		}
+
+		JSONObject json = new JSONObject();
+		json.put(MessageHelper.CONST_PROFILE, profile);
+		json.put(MessageHelper.CONST_VERSION, version);
+		json.put("reorder", reorder);
+		json.put("compiled", isCompiled());
+		json.put("projected", isProjected());
+		json.put("ranked", ranked != null);
+		json.put("segments", list);
+		return json;
+	}
+
+	// Message of the error of the validator for the first rule it rejects on its own, or for the whole rules
+	public static String describeError(JSONObject rules, ValidatorException error, ValidatorPool.Factory factory) {
+		for (String operator : rules.keySet()) {
+			JSONObject paths = rules.optJSONObject(operator);
+			if (paths == null)
+				continue;
+			for (String path : paths.keySet()) {
+				try {
+					new ValidatorPool(new JSONObject().put(operator, new JSONObject().put(path, paths.get(path))), 1, factory);
+				} catch (ValidatorException e) {
+					return String.format(MessageHelper.ERROR_RULE_INVALID, path, operator, getMessage(e));
+				}
+			}
+		}
+		return String.format(MessageHelper.ERROR_RULES_INVALID, getMessage(error));
+	}
+
+	private static String getMessage(ValidatorException e) {
+		return e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+	}
+
+	public static JSONObject createResponse(int nbOfErrors, ExplanationDetails explainationDetails) {
+		JSONObject responseObj = new JSONObject();
+		responseObj.put(MessageHelper.CONST_VALID, nbOfErrors == 0);
+		responseObj.put(MessageHelper.CONST_ERRORS, nbOfErrors);
+
+		if (explainationDetails != null) {
+			responseObj.put(MessageHelper.CONST_DETAILS, explainationDetails);
+			if (explainationDetails.getMode() == ExplainMode.COMPACT)
+				responseObj.put(MessageHelper.CONST_RULES, explainationDetails.getRules());
+		}
+
+		return responseObj;
+	}
+
+	private JSONObject checkSegments(JSONObject payload, ExplainMode explain, int maxErrors) throws ServiceException, ValidatorException {
+		SegmentsCheck check = new SegmentsCheck(explain, maxErrors);
+		for (RuleSegment segment : getOrderedSegments())
+			if (!check.add(segment, payload))
+				break;
+
+		if (reorder && segmentChecks.incrementAndGet() % RANKING_INTERVAL == 0)
+			ranked = RuleSegment.rank(getSegments());
+		return check.toResponse();
+	}
+
+	// Segments validated as a whole don't produce statistics, so a sample of the messages is validated segment by segment.
+	// Drawn per thread, so that concurrent validations don't contend on a shared counter.
+	private boolean isSampled(ExplainMode explain) {
+		int rate = options.getStatsSampleRate();
+		if (rate < 0)
+			rate = reorder ? REORDER_SAMPLE_RATE : 0;
+		return explain == ExplainMode.NONE && rate > 0 && ThreadLocalRandom.current().nextInt(rate) == 0;
+	}
+
+	private int checkValidationRules(JSONObject payload, ExplanationDetails explainationDetails) throws ServiceException {
+		int nbOfInvalidItems = 0;
+
+		List<ValidationResult> vrList = executeRules(payload);
+		if (vrList != null)
+			for (ValidationResult vrItem : vrList) {
+				if (!vrItem.isValid()) {
+					nbOfInvalidItems++;
+					if (failureListener != null)
+						failureListener.onFailure(profile, vrItem);
+				}
+				if (explainationDetails != null)
+					explainationDetails.add(vrItem);
+			}
+
+		return nbOfInvalidItems;
+	}
+
+	private List<ValidationResult> executeRules(JSONObject payload) throws ServiceException {
+		List<ValidationResult> checkList = null;
+
+		// Then, check the JSON Object
+		ValidationResult vr = validate(payload);
+
+		if (vr instanceof CompoundValidationResult) {
+			CompoundValidationResult cvr = (CompoundValidationResult) vr;
+			checkList = cvr.flatten();
+		}
+
+		return checkList;
+	}
+
+	// Accumulates segment results until the errors limit is reached
+	private class SegmentsCheck {
+
+		private final ExplanationDetails explainationDetails;
+		private final int maxErrors;
+		private int nbOfErrors;
+		private boolean partial;
+
+		public SegmentsCheck(ExplainMode explain, int maxErrors) {
+			this.explainationDetails = newExplanation(explain);
+			this.maxErrors = maxErrors;
+		}
+
+		public boolean add(RuleSegment segment, JSONObject payload) throws ValidatorException {
+			if (nbOfErrors >= maxErrors) {
+				partial = true;
+				return false;
+			}
+
+			long start = System.nanoTime();
+			List<ValidationResult> results = segment.getResults(payload);
+			long elapsed = System.nanoTime() - start;
+
+			boolean failed = false;
+			for (ValidationResult vrItem : results) {
+				if (!vrItem.isValid()) {
+					failed = true;
+					// A segment can hold several rules, the failures beyond the limit aren't reported
+					if (nbOfErrors == maxErrors) {
+						partial = true;
+						break;
+					}
+					nbOfErrors++;
+					if (failureListener != null)
+						failureListener.onFailure(profile, vrItem);
+				}
+				if (explainationDetails != null)
+					explainationDetails.add(vrItem);
+			}
+			segment.getStats().record(elapsed, failed);
+			return true;
+		}
+
+		public JSONObject toResponse() {
+			JSONObject responseObj = createResponse(nbOfErrors, explainationDetails);
+			if (partial)
+				responseObj.put(MessageHelper.CONST_PARTIAL, true);
+			return responseObj;
+		}
+
+	}
+
+}
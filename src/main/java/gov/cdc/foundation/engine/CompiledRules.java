@@ -0,0 +1,175 @@
+package gov.cdc.foundation.engine;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+// Ruleset turned into a tree of closures, operators, paths and values are resolved once when it is compiled instead of for every message.
+// Only rulesets made of $all operators over definite paths with string, boolean or integer values are compiled, ex: {"$all": {"$.contact.hobbies": ["Ski"]}},
+// where the value at each path must contain every listed value (a single value must be equal to the only listed one).
+// It only tells whether a message passes every rule: anything it doesn't accept, including values of other types, goes through the validator.
+// Messages can be either org.json or Jackson documents.
+// Rules are grouped by path in a PathIndex, each distinct path is resolved once per message and all the rules of a path read its value from the index.
+public class CompiledRules {
+
+	public static final String OPERATOR_ALL = "$all";
+
+	private final PathIndex paths;
+	private final int[] nodes;
+	private final Check[] checks;
+
+	private CompiledRules(PathIndex paths, Map<Integer, List<Check>> groups) {
+		this.paths = paths;
+		this.nodes = new int[groups.size()];
+		this.checks = new Check[groups.size()];
+		int i = 0;
+		for (Map.Entry<Integer, List<Check>> group : groups.entrySet()) {
+			nodes[i] = group.getKey();
+			checks[i++] = all(group.getValue());
+		}
+	}
+
+	// Null when the ruleset uses anything else
+	public static CompiledRules compile(JSONObject rules) {
+		if (rules.length() == 0)
+			return null;
+
+		PathIndex index = new PathIndex();
+		// Checks of the rules by node of their path, in the order of the rules
+		Map<Integer, List<Check>> groups = new LinkedHashMap<>();
+		for (String operator : rules.keySet()) {
+			if (!OPERATOR_ALL.equals(operator) || !(rules.get(operator) instanceof JSONObject))
+				return null;
+			JSONObject paths = rules.getJSONObject(operator);
+			if (paths.length() == 0)
+				return null;
+			for (String path : paths.keySet()) {
+				PathExpression expression = PathExpression.parse(path);
+				Object values = paths.get(path);
+				if (expression == null || expression.getTokens().isEmpty() || !(values instanceof JSONArray))
+					return null;
+				Check check = compileValues((JSONArray) values);
+				if (check == null)
+					return null;
+				groups.computeIfAbsent(index.add(expression), node -> new ArrayList<>()).add(check);
+			}
+		}
+		return new CompiledRules(index, groups);
+	}
+
+	public boolean test(JSONObject payload) {
+		return test(paths.values(payload));
+	}
+
+	public boolean test(JsonNode payload) {
+		return test(paths.values(payload));
+	}
+
+	// Number of distinct paths read by the rules
+	public int getNumberOfPaths() {
+		return nodes.length;
+	}
+
+	private boolean test(PathIndex.Values values) {
+		for (int i = 0; i < nodes.length; i++) {
+			Object value = values.get(nodes[i]);
+			if (value == null || !checks[i].test(value))
+				return false;
+		}
+		return true;
+	}
+
+	private static Check compileValues(JSONArray values) {
+		Set<Object> required = new HashSet<>();
+		for (int i = 0; i < values.length(); i++) {
+			Object value = normalize(values.get(i));
+			if (value == null)
+				return null;
+			required.add(value);
+		}
+
+		if (required.isEmpty())
+			return null;
+		if (required.size() == 1) {
+			Object expected = required.iterator().next();
+			return value -> {
+				int length = length(value);
+				if (length < 0)
+					return expected.equals(normalize(value));
+				for (int i = 0; i < length; i++)
+					if (expected.equals(normalize(item(value, i))))
+						return true;
+				return false;
+			};
+		}
+		return value -> {
+			int length = length(value);
+			Set<Object> found = new HashSet<>();
+			for (int i = 0; i < length; i++) {
+				Object item = normalize(item(value, i));
+				if (item != null && required.contains(item) && found.add(item) && found.size() == required.size())
+					return true;
+			}
+			return false;
+		};
+	}
+
+	private static Check all(List<Check> checks) {
+		if (checks.size() == 1)
+			return checks.get(0);
+		Check[] array = checks.toArray(new Check[0]);
+		return document -> {
+			for (Check check : array)
+				if (!check.test(document))
+					return false;
+			return true;
+		};
+	}
+
+	// Number of items of an array, -1 for anything else
+	private static int length(Object value) {
+		if (value instanceof JSONArray)
+			return ((JSONArray) value).length();
+		if (value instanceof JsonNode && ((JsonNode) value).isArray())
+			return ((JsonNode) value).size();
+		return -1;
+	}
+
+	private static Object item(Object array, int index) {
+		return array instanceof JSONArray ? ((JSONArray) array).opt(index) : ((JsonNode) array).get(index);
+	}
+
+	// Values whose equality doesn't depend on how the validator compares types, null for the other ones
+	private static Object normalize(Object value) {
+		if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte)
+			return ((Number) value).longValue();
+		if (value instanceof String || value instanceof Boolean)
+			return value;
+		if (value instanceof JsonNode) {
+			JsonNode node = (JsonNode) value;
+			if (node.isInt() || node.isLong())
+				return node.longValue();
+			if (node.isTextual())
+				return node.textValue();
+			if (node.isBoolean())
+				return node.booleanValue();
+		}
+		return null;
+	}
+
+	@FunctionalInterface
+	private interface Check {
+
+		boolean test(Object value);
+
+	}
+
+}
@@ -0,0 +1,56 @@
+package gov.cdc.foundation.engine;
+
+import java.util.Locale;
+
+// What the details of an explained validation contain, from the value of the explain parameter
+public enum ExplainMode {
+
+	// No details
+	NONE("false"),
+	// Every rule with its title, command and body
+	FULL("true"),
+	// Failing rules only, in the full format
+	FAILURES_ONLY("failuresOnly"),
+	// Identifiers of the failing rules only
+	IDS_ONLY("idsOnly"),
+	// Every rule as [ID, passed, reference], the body of each referenced rule is written once in the rules of the response
+	COMPACT("compact");
+
+	private final String value;
+
+	ExplainMode(String value) {
+		this.value = value;
+	}
+
+	public String getValue() {
+		return value;
+	}
+
+	// Whether the details of a valid message list its rules, otherwise they are empty
+	public boolean hasPassedRules() {
+		return this == FULL || this == COMPACT;
+	}
+
+	// Case insensitive, "full", "1", "yes" and "on" are aliases of "true", "0", "no" and "off" of "false", unknown values return null
+	public static ExplainMode parse(String value) {
+		if (value == null)
+			return NONE;
+		switch (value.trim().toLowerCase(Locale.ROOT)) {
+		case "full":
+		case "1":
+		case "yes":
+		case "on":
+			return FULL;
+		case "0":
+		case "no":
+		case "off":
+			return NONE;
+		default:
+			for (ExplainMode mode : values())
+				if (mode.value.equalsIgnoreCase(value.trim()))
+					return mode;
+			return null;
+		}
+	}
+
+}
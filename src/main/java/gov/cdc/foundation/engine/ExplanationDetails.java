@@ -0,0 +1,183 @@
+package gov.cdc.foundation.engine;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONString;
+
+import gov.cdc.engine.result.ValidationResult;
+
+// Details of an explained validation. Only the validation results are kept, the details are written from them when the
+// response is serialized, so no JSON object is built per rule and the rule bodies are copied as they are, without being parsed.
+// The details are only written, as a JSON array: org.json copies them as they are in the response, parse the response to read them.
+// JSONMessageConverter writes them straight to the response body with write(Writer), toJSONString() is only used when a response is turned into a String.
+public class ExplanationDetails implements JSONString {
+
+	private static final int REFERENCE_LENGTH = 16;
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	private final ExplainMode mode;
+	private final Map<String, String> references;
+	private final List<ValidationResult> results = new ArrayList<>();
+
+	// References are cached by rule body in the given map, which can be shared by all the validations of a profile
+	public ExplanationDetails(ExplainMode mode, Map<String, String> references) {
+		this.mode = mode;
+		this.references = references;
+	}
+
+	public ExplainMode getMode() {
+		return mode;
+	}
+
+	public void add(ValidationResult vr) {
+		if (vr.isValid() && (mode == ExplainMode.FAILURES_ONLY || mode == ExplainMode.IDS_ONLY))
+			return;
+		results.add(vr);
+	}
+
+	public int length() {
+		return results.size();
+	}
+
+	// Bodies of the rules referenced by the compact details, written as a JSON object
+	public RuleBodies getRules() {
+		return new RuleBodies();
+	}
+
+	@Override
+	public String toJSONString() {
+		return write(new StringWriter()).toString();
+	}
+
+	@Override
+	public String toString() {
+		return toJSONString();
+	}
+
+	public Writer write(Writer writer) {
+		try {
+			writer.write('[');
+			for (int i = 0; i < results.size(); i++) {
+				if (i > 0)
+					writer.write(',');
+				writeDetail(writer, results.get(i));
+			}
+			writer.write(']');
+			return writer;
+		} catch (IOException e) {
+			throw new JSONException(e);
+		}
+	}
+
+	private void writeDetail(Writer writer, ValidationResult vr) throws IOException {
+		switch (mode) {
+		case IDS_ONLY:
+			writeString(writer, vr.getDescription());
+			break;
+		case COMPACT:
+			writer.write('[');
+			writeString(writer, vr.getDescription());
+			writer.write(vr.isValid() ? ",true," : ",false,");
+			writeString(writer, vr.getRule() != null ? getReference(vr.getRule()) : null);
+			writer.write(']');
+			break;
+		default:
+			writer.write("{\"ID\":");
+			writeString(writer, vr.getDescription());
+			if (vr.getComment() != null) {
+				writer.write(",\"title\":");
+				writeString(writer, vr.getComment());
+			}
+			if (vr.getCommand() != null) {
+				writer.write(",\"command\":");
+				writeString(writer, vr.getCommand());
+			}
+			if (vr.getRule() != null) {
+				writer.write(",\"rule\":");
+				writer.write(vr.getRule());
+			}
+			writer.write(vr.isValid() ? ",\"passed\":true}" : ",\"passed\":false}");
+		}
+	}
+
+	private static void writeString(Writer writer, String value) throws IOException {
+		if (value == null)
+			writer.write("null");
+		else
+			JSONObject.quote(value, writer);
+	}
+
+	private String getReference(String rule) {
+		if (references == null)
+			return reference(rule);
+		return references.computeIfAbsent(rule, ExplanationDetails::reference);
+	}
+
+	// Stable identifier of a rule body, the same rule gets the same reference in every response
+	public static String reference(String rule) {
+		try {
+			byte[] hash = MessageDigest.getInstance("SHA-256").digest(rule.getBytes(StandardCharsets.UTF_8));
+			char[] hex = new char[REFERENCE_LENGTH];
+			for (int i = 0; i < REFERENCE_LENGTH / 2; i++) {
+				hex[2 * i] = HEX_DIGITS[(hash[i] >> 4) & 0xF];
+				hex[2 * i + 1] = HEX_DIGITS[hash[i] & 0xF];
+			}
+			return new String(hex);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public class RuleBodies implements JSONString {
+
+		@Override
+		public String toJSONString() {
+			return write(new StringWriter()).toString();
+		}
+
+		public Writer write(Writer writer) {
+			try {
+				writer.write('{');
+				boolean first = true;
+				for (Map.Entry<String, String> entry : getBodies().entrySet()) {
+					if (!first)
+						writer.write(',');
+					JSONObject.quote(entry.getKey(), writer);
+					writer.write(':');
+					writer.write(entry.getValue());
+					first = false;
+				}
+				writer.write('}');
+				return writer;
+			} catch (IOException e) {
+				throw new JSONException(e);
+			}
+		}
+
+		@Override
+		public String toString() {
+			return toJSONString();
+		}
+
+		private Map<String, String> getBodies() {
+			Map<String, String> bodies = new LinkedHashMap<>();
+			for (ValidationResult vr : results)
+				if (vr.getRule() != null)
+					bodies.putIfAbsent(getReference(vr.getRule()), vr.getRule());
+			return bodies;
+		}
+
+	}
+
+}
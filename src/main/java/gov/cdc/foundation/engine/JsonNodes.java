@@ -0,0 +1,67 @@
+package gov.cdc.foundation.engine;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// Jackson documents, for the code paths that don't need org.json
+public class JsonNodes {
+
+	// Duplicate keys are rejected by org.json, so they are rejected here as well
+	private static final ObjectMapper mapper = new ObjectMapper().enable(JsonParser.Feature.STRICT_DUPLICATE_DETECTION);
+
+	private JsonNodes() {
+		throw new IllegalAccessError("Helper class");
+	}
+
+	// Parses a JSON object from its bytes, the encoding is detected, null when it is not a valid JSON object
+	public static JsonNode parseObject(byte[] payload) {
+		try {
+			JsonNode node = mapper.readTree(payload);
+			return node != null && node.isObject() ? node : null;
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	// Same object as org.json would have parsed from the text of the node, without going through the text
+	public static JSONObject toJSONObject(JsonNode node) {
+		JSONObject object = new JSONObject();
+		Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+		while (fields.hasNext()) {
+			Map.Entry<String, JsonNode> field = fields.next();
+			object.put(field.getKey(), toValue(field.getValue()));
+		}
+		return object;
+	}
+
+	private static JSONArray toJSONArray(JsonNode node) {
+		JSONArray array = new JSONArray();
+		for (JsonNode item : node)
+			array.put(toValue(item));
+		return array;
+	}
+
+	private static Object toValue(JsonNode node) {
+		if (node.isObject())
+			return toJSONObject(node);
+		if (node.isArray())
+			return toJSONArray(node);
+		if (node.isTextual())
+			return node.textValue();
+		if (node.isBoolean())
+			return node.booleanValue();
+		// org.json picks the number type from the text, ex: Integer, Long or Double
+		if (node.isNumber())
+			return JSONObject.stringToValue(node.asText());
+		return JSONObject.NULL;
+	}
+
+}
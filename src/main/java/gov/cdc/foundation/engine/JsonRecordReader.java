@@ -0,0 +1,45 @@
+package gov.cdc.foundation.engine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// Reads records one by one from either a top-level JSON array or NDJSON (whitespace separated JSON values)
+public class JsonRecordReader implements Closeable {
+
+	private static final ObjectMapper mapper = new ObjectMapper();
+
+	private final JsonParser parser;
+	private boolean started;
+	private boolean inArray;
+
+	public JsonRecordReader(InputStream in) throws IOException {
+		this.parser = mapper.getFactory().createParser(in);
+	}
+
+	public JsonNode next() throws IOException {
+		JsonToken token = parser.nextToken();
+		if (!started) {
+			started = true;
+			if (token == JsonToken.START_ARRAY) {
+				inArray = true;
+				token = parser.nextToken();
+			}
+		}
+
+		if (token == null || (inArray && token == JsonToken.END_ARRAY))
+			return null;
+		return parser.readValueAsTree();
+	}
+
+	@Override
+	public void close() throws IOException {
+		parser.close();
+	}
+
+}
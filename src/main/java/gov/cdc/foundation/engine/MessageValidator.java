@@ -0,0 +1,20 @@
+package gov.cdc.foundation.engine;
+
+import org.json.JSONObject;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import gov.cdc.engine.ValidatorException;
+import gov.cdc.helper.common.ServiceException;
+
+@FunctionalInterface
+public interface MessageValidator {
+
+	JSONObject validate(JSONObject message) throws ServiceException, ValidatorException;
+
+	// Records are read as Jackson documents, validators that can use them directly override this
+	default JSONObject validate(JsonNode message) throws ServiceException, ValidatorException {
+		return validate(JsonNodes.toJSONObject(message));
+	}
+
+}
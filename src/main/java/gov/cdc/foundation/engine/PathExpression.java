@@ -0,0 +1,93 @@
+package gov.cdc.foundation.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Definite JSONPath made of object keys and array indexes only, ex: $.contact.hobbies, $['first name'] or $.items[0].id.
+// Wildcards, deep scans, filters and slices are not supported, parse() returns null for them.
+public class PathExpression {
+
+	private final String path;
+	private final List<Object> tokens;
+
+	private PathExpression(String path, List<Object> tokens) {
+		this.path = path;
+		this.tokens = Collections.unmodifiableList(tokens);
+	}
+
+	public static PathExpression parse(String path) {
+		return parse(path, false);
+	}
+
+	// Longest definite part of a path, ex: $.contact for $.contact.hobbies[*] or $.contact..name, $ for $..name
+	public static PathExpression parsePrefix(String path) {
+		return parse(path, true);
+	}
+
+	private static PathExpression parse(String path, boolean prefix) {
+		if (path == null || !path.startsWith("$"))
+			return null;
+
+		List<Object> tokens = new ArrayList<>();
+		int i = 1;
+		while (i < path.length()) {
+			char c = path.charAt(i);
+			if (c == '.') {
+				int end = i + 1;
+				while (end < path.length() && path.charAt(end) != '.' && path.charAt(end) != '[')
+					end++;
+				String key = path.substring(i + 1, end);
+				if (key.isEmpty() || !isPlainKey(key))
+					return prefix ? new PathExpression(path.substring(0, i), tokens) : null;
+				tokens.add(key);
+				i = end;
+			} else if (c == '[') {
+				int end = path.indexOf(']', i);
+				Object token = end < 0 ? null : parseBracket(path.substring(i + 1, end));
+				if (token == null)
+					return prefix ? new PathExpression(path.substring(0, i), tokens) : null;
+				tokens.add(token);
+				i = end + 1;
+			} else {
+				return prefix ? new PathExpression(path.substring(0, i), tokens) : null;
+			}
+		}
+		return new PathExpression(path, tokens);
+	}
+
+	private static boolean isPlainKey(String key) {
+		for (int i = 0; i < key.length(); i++) {
+			char c = key.charAt(i);
+			if (c == '*' || c == '?' || c == '@' || c == '(' || c == ')' || c == '\'' || c == '"' || c == ',' || c == ':')
+				return false;
+		}
+		return true;
+	}
+
+	private static Object parseBracket(String content) {
+		if (content.length() >= 2 && (content.charAt(0) == '\'' || content.charAt(0) == '"')) {
+			char quote = content.charAt(0);
+			if (content.charAt(content.length() - 1) != quote)
+				return null;
+			String key = content.substring(1, content.length() - 1);
+			return key.indexOf(quote) < 0 ? key : null;
+		}
+		try {
+			int index = Integer.parseInt(content);
+			return index >= 0 ? index : null;
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	// Either String (object key) or Integer (array index) items
+	public List<Object> getTokens() {
+		return tokens;
+	}
+
+}
@@ -0,0 +1,97 @@
+package gov.cdc.foundation.engine;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+// Definite JSONPaths of a ruleset stored as a prefix tree of nodes, so that a path read by several rules, or a prefix shared by several paths,
+// ex: $.contact for $.contact.name and $.contact.hobbies, is resolved once per document whatever the number of rules reading it.
+// Paths are added when the rules are compiled, values() then indexes the values of a document, org.json or Jackson.
+public class PathIndex {
+
+	private static final Object MISSING = new Object();
+
+	private final List<Object> tokens = new ArrayList<>();
+	private final List<Integer> parents = new ArrayList<>();
+	private final List<Map<Object, Integer>> children = new ArrayList<>();
+
+	public PathIndex() {
+		// The root node is the document itself
+		addNode(-1, null);
+	}
+
+	// Node of the path, the same node is returned for every spelling of a path, ex: $.contact.name and $['contact']['name']
+	public int add(PathExpression expression) {
+		int node = 0;
+		for (Object token : expression.getTokens()) {
+			Integer child = children.get(node).get(token);
+			if (child == null) {
+				child = addNode(node, token);
+				children.get(node).put(token, child);
+			}
+			node = child;
+		}
+		return node;
+	}
+
+	public int getNumberOfNodes() {
+		return tokens.size();
+	}
+
+	public Values values(Object document) {
+		return new Values(document);
+	}
+
+	private int addNode(int parent, Object token) {
+		tokens.add(token);
+		parents.add(parent);
+		children.add(new HashMap<>());
+		return tokens.size() - 1;
+	}
+
+	private static Object resolve(Object parent, Object token) {
+		if (parent instanceof JsonNode) {
+			JsonNode node = (JsonNode) parent;
+			if (token instanceof String && node.isObject())
+				return node.get((String) token);
+			if (token instanceof Integer && node.isArray())
+				return node.get((Integer) token);
+			return null;
+		}
+		if (token instanceof String && parent instanceof JSONObject)
+			return ((JSONObject) parent).opt((String) token);
+		if (token instanceof Integer && parent instanceof JSONArray)
+			return ((JSONArray) parent).opt((Integer) token);
+		return null;
+	}
+
+	// Values of the nodes for one document, each node is resolved the first time it is read, from the value of its parent
+	public class Values {
+
+		private final Object[] values;
+
+		private Values(Object document) {
+			values = new Object[tokens.size()];
+			values[0] = document;
+		}
+
+		// Null when the document has no value at the path of the node
+		public Object get(int node) {
+			Object value = values[node];
+			if (value == null) {
+				Object parent = get(parents.get(node));
+				value = parent == null ? null : resolve(parent, tokens.get(node));
+				values[node] = value = value == null ? MISSING : value;
+			}
+			return value == MISSING ? null : value;
+		}
+
+	}
+
+}
@@ -0,0 +1,75 @@
+package gov.cdc.foundation.engine;
+
+import java.util.Set;
+
+public class ProfileOptions {
+
+	private int poolSize = 1;
+	private Set<String> segmentOperators = RuleSegment.DEFAULT_OPERATORS;
+	private boolean reorder;
+	private int statsSampleRate;
+	private boolean compiled;
+	private boolean projected;
+	private ValidatorPool.Factory validatorFactory = ValidatorPool.SIMPLE_VALIDATOR;
+
+	public int getPoolSize() {
+		return poolSize;
+	}
+
+	public void setPoolSize(int poolSize) {
+		this.poolSize = poolSize;
+	}
+
+	public Set<String> getSegmentOperators() {
+		return segmentOperators;
+	}
+
+	public void setSegmentOperators(Set<String> segmentOperators) {
+		this.segmentOperators = segmentOperators;
+	}
+
+	public boolean isReorder() {
+		return reorder;
+	}
+
+	public void setReorder(boolean reorder) {
+		this.reorder = reorder;
+	}
+
+	// One message out of statsSampleRate is validated segment by segment to collect statistics, 0 disables it,
+	// a negative rate samples only the profiles that reorder their segments
+	public int getStatsSampleRate() {
+		return statsSampleRate;
+	}
+
+	public void setStatsSampleRate(int statsSampleRate) {
+		this.statsSampleRate = statsSampleRate;
+	}
+
+	// Accepts valid messages with the compiled rules when the ruleset can be compiled
+	public boolean isCompiled() {
+		return compiled;
+	}
+
+	public void setCompiled(boolean compiled) {
+		this.compiled = compiled;
+	}
+
+	// Parses messages into documents that only contain the paths read by the rules, when the ruleset allows it
+	public boolean isProjected() {
+		return projected;
+	}
+
+	public void setProjected(boolean projected) {
+		this.projected = projected;
+	}
+
+	public ValidatorPool.Factory getValidatorFactory() {
+		return validatorFactory;
+	}
+
+	public void setValidatorFactory(ValidatorPool.Factory validatorFactory) {
+		this.validatorFactory = validatorFactory;
+	}
+
+}
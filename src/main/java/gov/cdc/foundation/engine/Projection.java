@@ -0,0 +1,164 @@
+package gov.cdc.foundation.engine;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+// Parts of a message a ruleset reads, messages are parsed into a document that only contains them.
+// Each path of the rules is followed as far as it is definite, ex: $.contact.hobbies[*] keeps the whole value of $.contact.hobbies,
+// everything else is skipped by the parser without being built. Rulesets reading the whole document, ex: $..name, are not projected.
+public class Projection {
+
+	// Duplicate keys are rejected by org.json, so they are rejected here as well
+	private static final JsonFactory factory = new JsonFactory().enable(JsonParser.Feature.STRICT_DUPLICATE_DETECTION);
+
+	private final Node root;
+	private final int numberOfPaths;
+
+	private Projection(Node root, int numberOfPaths) {
+		this.root = root;
+		this.numberOfPaths = numberOfPaths;
+	}
+
+	// Null when the ruleset isn't made of {operator: {path: values}} rules or when one of its paths reads the whole document
+	public static Projection of(JSONObject rules) {
+		if (rules.length() == 0)
+			return null;
+
+		Node root = new Node();
+		int numberOfPaths = 0;
+		for (String operator : rules.keySet()) {
+			JSONObject paths = rules.optJSONObject(operator);
+			if (paths == null)
+				return null;
+			for (String path : paths.keySet()) {
+				PathExpression expression = PathExpression.parsePrefix(path);
+				if (expression == null || expression.getTokens().isEmpty() || paths.get(path) instanceof JSONObject)
+					return null;
+				root.add(expression);
+				numberOfPaths++;
+			}
+		}
+		return new Projection(root, numberOfPaths);
+	}
+
+	public int getNumberOfPaths() {
+		return numberOfPaths;
+	}
+
+	// Parses a JSON object from its bytes, the encoding is detected, null when it is not a valid JSON object
+	public JSONObject parse(byte[] payload) {
+		try (JsonParser parser = factory.createParser(payload)) {
+			if (parser.nextToken() != JsonToken.START_OBJECT)
+				return null;
+			Object document = read(parser, root);
+			return parser.nextToken() == null ? (JSONObject) document : null;
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	// Reads the value at the current token, the parser is left on its last token
+	private static Object read(JsonParser parser, Node node) throws IOException {
+		JsonToken token = parser.currentToken();
+		// Values of an unexpected type are kept whole, so that the rules see them as they are
+		if (node.whole || (token == JsonToken.START_OBJECT && !node.items.isEmpty()) || (token == JsonToken.START_ARRAY && !node.keys.isEmpty()))
+			return readWhole(parser);
+
+		if (token == JsonToken.START_OBJECT) {
+			JSONObject object = new JSONObject();
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String name = parser.getCurrentName();
+				Node child = node.keys.get(name);
+				parser.nextToken();
+				if (child == null)
+					parser.skipChildren();
+				else
+					object.put(name, read(parser, child));
+			}
+			return object;
+		}
+
+		if (token == JsonToken.START_ARRAY) {
+			// Items before the last read index are kept as null so that the indexes don't change
+			JSONArray array = new JSONArray();
+			for (int index = 0; parser.nextToken() != JsonToken.END_ARRAY; index++) {
+				Node child = node.items.get(index);
+				if (child != null) {
+					array.put(read(parser, child));
+				} else {
+					parser.skipChildren();
+					if (index < node.length)
+						array.put(JSONObject.NULL);
+				}
+			}
+			return array;
+		}
+
+		return readWhole(parser);
+	}
+
+	private static Object readWhole(JsonParser parser) throws IOException {
+		switch (parser.currentToken()) {
+		case START_OBJECT:
+			JSONObject object = new JSONObject();
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String name = parser.getCurrentName();
+				parser.nextToken();
+				object.put(name, readWhole(parser));
+			}
+			return object;
+		case START_ARRAY:
+			JSONArray array = new JSONArray();
+			while (parser.nextToken() != JsonToken.END_ARRAY)
+				array.put(readWhole(parser));
+			return array;
+		case VALUE_STRING:
+			return parser.getText();
+		// org.json picks the number type from the text, ex: Integer, Long or Double
+		case VALUE_NUMBER_INT:
+		case VALUE_NUMBER_FLOAT:
+			return JSONObject.stringToValue(parser.getText());
+		case VALUE_TRUE:
+			return Boolean.TRUE;
+		case VALUE_FALSE:
+			return Boolean.FALSE;
+		default:
+			return JSONObject.NULL;
+		}
+	}
+
+	// Object keys and array indexes read below a value, or the whole value
+	private static class Node {
+
+		private boolean whole;
+		private final Map<String, Node> keys = new HashMap<>();
+		private final Map<Integer, Node> items = new HashMap<>();
+		// Number of items to keep in an array
+		private int length;
+
+		private void add(PathExpression expression) {
+			Node node = this;
+			for (Object token : expression.getTokens()) {
+				if (node.whole)
+					return;
+				if (token instanceof Integer) {
+					node.length = Math.max(node.length, (Integer) token + 1);
+					node = node.items.computeIfAbsent((Integer) token, key -> new Node());
+				} else {
+					node = node.keys.computeIfAbsent((String) token, key -> new Node());
+				}
+			}
+			node.whole = true;
+		}
+
+	}
+
+}
@@ -0,0 +1,10 @@
+package gov.cdc.foundation.engine;
+
+import gov.cdc.engine.result.ValidationResult;
+
+@FunctionalInterface
+public interface RuleFailureListener {
+
+	void onFailure(String profile, ValidationResult result);
+
+}
@@ -0,0 +1,116 @@
+package gov.cdc.foundation.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.json.JSONObject;
+
+import gov.cdc.engine.ValidatorException;
+import gov.cdc.engine.result.CompoundValidationResult;
+import gov.cdc.engine.result.ValidationResult;
+
+// Part of a ruleset that can be validated on its own.
+// Operators listed as splittable must be conjunctive over their JSONPath keys, ex: {"$all": {"$.a": [...], "$.b": [...]}} is
+// split into {"$all": {"$.a": [...]}} and {"$all": {"$.b": [...]}}. Anything else is kept as a single segment.
+public class RuleSegment {
+
+	public static final Set<String> DEFAULT_OPERATORS = Collections.unmodifiableSet(new HashSet<>(Collections.singletonList("$all")));
+
+	private static final String PATH_PREFIX = "$.";
+
+	private final String operator;
+	private final String path;
+	private final ValidatorPool validators;
+	private final SegmentStats stats = new SegmentStats();
+
+	public RuleSegment(String operator, String path, JSONObject rules, int poolSize) throws ValidatorException {
+		this(operator, path, rules, poolSize, ValidatorPool.SIMPLE_VALIDATOR);
+	}
+
+	public RuleSegment(String operator, String path, JSONObject rules, int poolSize, ValidatorPool.Factory factory) throws ValidatorException {
+		this.operator = operator;
+		this.path = path;
+		this.validators = new ValidatorPool(rules, poolSize, factory);
+	}
+
+	public static List<RuleSegment> split(JSONObject rules, Set<String> operators, int poolSize) throws ValidatorException {
+		return split(rules, operators, poolSize, ValidatorPool.SIMPLE_VALIDATOR);
+	}
+
+	public static List<RuleSegment> split(JSONObject rules, Set<String> operators, int poolSize, ValidatorPool.Factory factory) throws ValidatorException {
+		List<RuleSegment> segments = new ArrayList<>();
+		if (!isSplittable(rules, operators)) {
+			segments.add(new RuleSegment(null, null, rules, poolSize, factory));
+			return segments;
+		}
+
+		for (String operator : rules.keySet()) {
+			JSONObject paths = rules.getJSONObject(operator);
+			for (String path : paths.keySet()) {
+				JSONObject segment = new JSONObject();
+				segment.put(operator, new JSONObject().put(path, paths.get(path)));
+				segments.add(new RuleSegment(operator, path, segment, poolSize, factory));
+			}
+		}
+		return segments;
+	}
+
+	// Segments sorted by cost per rejection, as long as every segment has enough statistics, otherwise null
+	public static List<RuleSegment> rank(List<RuleSegment> segments) {
+		for (RuleSegment segment : segments)
+			if (!segment.stats.isReliable())
+				return null;
+
+		List<RuleSegment> ranked = new ArrayList<>(segments);
+		ranked.sort(Comparator.comparingDouble(segment -> segment.stats.getCostPerRejection()));
+		return ranked;
+	}
+
+	private static boolean isSplittable(JSONObject rules, Set<String> operators) {
+		if (rules.length() == 0)
+			return false;
+		for (String operator : rules.keySet()) {
+			if (!operators.contains(operator) || !(rules.get(operator) instanceof JSONObject))
+				return false;
+			JSONObject paths = rules.getJSONObject(operator);
+			if (paths.length() == 0)
+				return false;
+			for (String path : paths.keySet())
+				if (!path.startsWith(PATH_PREFIX))
+					return false;
+		}
+		return true;
+	}
+
+	public String getOperator() {
+		return operator;
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	public SegmentStats getStats() {
+		return stats;
+	}
+
+	public JSONObject getRules() {
+		return validators.getRules();
+	}
+
+	public ValidationResult validate(JSONObject payload) throws ValidatorException {
+		return validators.validate(payload);
+	}
+
+	public List<ValidationResult> getResults(JSONObject payload) throws ValidatorException {
+		ValidationResult vr = validate(payload);
+		if (vr instanceof CompoundValidationResult)
+			return ((CompoundValidationResult) vr).flatten();
+		return Collections.emptyList();
+	}
+
+}
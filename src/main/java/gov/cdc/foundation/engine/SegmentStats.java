@@ -0,0 +1,62 @@
+package gov.cdc.foundation.engine;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.json.JSONObject;
+
+// Production statistics of a rule segment, used to run cheap and selective segments first
+public class SegmentStats {
+
+	// Below this number of evaluations, the statistics are not trusted
+	public static final long MIN_EVALUATIONS = 100;
+
+	private final LongAdder evaluations = new LongAdder();
+	private final LongAdder failures = new LongAdder();
+	private final LongAdder nanos = new LongAdder();
+
+	public void record(long elapsedNanos, boolean failed) {
+		evaluations.increment();
+		nanos.add(elapsedNanos);
+		if (failed)
+			failures.increment();
+	}
+
+	public long getEvaluations() {
+		return evaluations.sum();
+	}
+
+	public long getFailures() {
+		return failures.sum();
+	}
+
+	public double getFailureRate() {
+		long count = evaluations.sum();
+		return count == 0 ? 0 : (double) failures.sum() / count;
+	}
+
+	public double getAverageNanos() {
+		long count = evaluations.sum();
+		return count == 0 ? 0 : (double) nanos.sum() / count;
+	}
+
+	public boolean isReliable() {
+		return evaluations.sum() >= MIN_EVALUATIONS;
+	}
+
+	// Expected time spent before this segment rejects a message, the lowest runs first.
+	// Running conjunctive checks by increasing cost / rejection probability minimizes the expected cost of a fail fast validation.
+	public double getCostPerRejection() {
+		double rate = getFailureRate();
+		return rate == 0 ? Double.MAX_VALUE : getAverageNanos() / rate;
+	}
+
+	public JSONObject toJSON() {
+		JSONObject json = new JSONObject();
+		json.put("evaluations", getEvaluations());
+		json.put("failures", getFailures());
+		json.put("failureRate", getFailureRate());
+		json.put("averageTime", getAverageNanos());
+		return json;
+	}
+
+}
@@ -0,0 +1,125 @@
+package gov.cdc.foundation.engine;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import gov.cdc.foundation.helper.MessageHelper;
+
+// Validates records as they are read and writes one NDJSON result line per record, so memory doesn't depend on the input size.
+// When an executor is provided, records are validated in parallel but at most `window` of them are in flight and results are
+// written in input order: a slow client blocks the writes, which stops the reads.
+public class ValidationStream {
+
+	private final MessageValidator validator;
+	private final ExecutorService executor;
+	private final int window;
+	private int read;
+	private int total;
+	private int valid;
+
+	public ValidationStream(MessageValidator validator) {
+		this(validator, null, 1);
+	}
+
+	public ValidationStream(MessageValidator validator, ExecutorService executor, int window) {
+		this.validator = validator;
+		this.executor = executor;
+		this.window = Math.max(1, window);
+	}
+
+	public void process(InputStream in, OutputStream output) throws IOException {
+		Writer out = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+		Deque<Future<JSONObject>> pending = new ArrayDeque<>();
+		try (JsonRecordReader reader = new JsonRecordReader(in)) {
+			JsonNode record;
+			while ((record = reader.next()) != null) {
+				final int index = read++;
+				final JsonNode current = record;
+				if (executor == null) {
+					emit(out, validate(index, current));
+					continue;
+				}
+
+				pending.add(executor.submit(() -> validate(index, current)));
+				if (pending.size() >= window)
+					emit(out, await(pending.poll()));
+			}
+			while (!pending.isEmpty())
+				emit(out, await(pending.poll()));
+		} catch (IOException e) {
+			// The response is already committed, so report the error as the last line
+			while (!pending.isEmpty())
+				emit(out, await(pending.poll()));
+			JSONObject error = new JSONObject();
+			error.put(MessageHelper.CONST_INDEX, read);
+			error.put(MessageHelper.CONST_ERROR, e.getMessage());
+			write(out, error);
+		} finally {
+			for (Future<JSONObject> future : pending)
+				future.cancel(false);
+		}
+		out.flush();
+	}
+
+	public int getTotal() {
+		return total;
+	}
+
+	public int getValid() {
+		return valid;
+	}
+
+	protected JSONObject validate(int index, JsonNode record) {
+		JSONObject result;
+		try {
+			if (!record.isObject())
+				throw new JSONException(MessageHelper.ERROR_RECORD_NOT_OBJECT);
+			result = validator.validate(record);
+		} catch (Exception e) {
+			result = new JSONObject();
+			result.put(MessageHelper.CONST_VALID, false);
+			result.put(MessageHelper.CONST_ERROR, e.getMessage());
+		}
+		result.put(MessageHelper.CONST_INDEX, index);
+		return result;
+	}
+
+	private JSONObject await(Future<JSONObject> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException(e.getMessage());
+		} catch (ExecutionException e) {
+			throw new IOException(e.getCause());
+		}
+	}
+
+	private void emit(Writer out, JSONObject result) throws IOException {
+		total++;
+		if (result.getBoolean(MessageHelper.CONST_VALID))
+			valid++;
+		write(out, result);
+	}
+
+	protected void write(Writer out, JSONObject result) throws IOException {
+		result.write(out);
+		out.write('\n');
+	}
+
+}
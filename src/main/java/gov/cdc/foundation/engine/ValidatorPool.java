@@ -0,0 +1,81 @@
+package gov.cdc.foundation.engine;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.JSONObject;
+
+import gov.cdc.engine.SimpleValidator;
+import gov.cdc.engine.ValidatorException;
+import gov.cdc.engine.result.ValidationResult;
+
+public class ValidatorPool {
+
+	// Creates the validators of the pool from the rules, ex: the SDK validator
+	@FunctionalInterface
+	public interface Factory {
+
+		SimpleValidator create(JSONObject rules) throws ValidatorException;
+
+	}
+
+	public static final Factory SIMPLE_VALIDATOR = rules -> {
+		SimpleValidator validator = new SimpleValidator();
+		validator.initialize(rules);
+		return validator;
+	};
+
+	private final JSONObject rules;
+	private final int maxIdle;
+	private final Factory factory;
+	private final Queue<SimpleValidator> idle = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger idleCount = new AtomicInteger();
+
+	public ValidatorPool(JSONObject rules, int maxIdle) throws ValidatorException {
+		this(rules, maxIdle, SIMPLE_VALIDATOR);
+	}
+
+	public ValidatorPool(JSONObject rules, int maxIdle, Factory factory) throws ValidatorException {
+		this.rules = rules;
+		this.maxIdle = Math.max(1, maxIdle);
+		this.factory = factory;
+
+		// Initialize the first validator right away so invalid rules fail when the pool is built
+		release(create());
+	}
+
+	public JSONObject getRules() {
+		return rules;
+	}
+
+	public ValidationResult validate(JSONObject payload) throws ValidatorException {
+		SimpleValidator validator = borrow();
+		try {
+			return validator.validate(payload);
+		} finally {
+			release(validator);
+		}
+	}
+
+	public SimpleValidator borrow() throws ValidatorException {
+		SimpleValidator validator = idle.poll();
+		if (validator == null)
+			return create();
+		idleCount.decrementAndGet();
+		return validator;
+	}
+
+	public void release(SimpleValidator validator) {
+		// SimpleValidator doesn't guarantee thread safety, so each instance is only used by one thread at a time
+		if (idleCount.incrementAndGet() <= maxIdle)
+			idle.offer(validator);
+		else
+			idleCount.decrementAndGet();
+	}
+
+	private SimpleValidator create() throws ValidatorException {
+		return factory.create(rules);
+	}
+
+}
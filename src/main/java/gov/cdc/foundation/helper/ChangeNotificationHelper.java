@@ -0,0 +1,191 @@
+package gov.cdc.foundation.helper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.log4j.Logger;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import gov.cdc.helper.common.ServiceException;
+
+// Publishes profile changes to the watchers of this instance, and follows the changes published by the peers
+@Component
+public class ChangeNotificationHelper implements ChangeSubscriber.Listener {
+
+	private static final Logger logger = Logger.getLogger(ChangeNotificationHelper.class);
+
+	public static final String WATCH_PATH = "watch";
+
+	private static ChangeNotificationHelper instance;
+
+	private final String origin = UUID.randomUUID().toString();
+	private final AtomicLong sequence = new AtomicLong();
+	private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+	private final List<ChangeSubscriber> subscribers = new ArrayList<>();
+	// Last sequence received from each peer
+	private final Map<String, Long> received = new ConcurrentHashMap<>();
+	private final ScheduledExecutorService heartbeat;
+	private long timeout;
+	private String authorization;
+	private ProfileCacheHelper profiles;
+	private RulesRepositoryHelper repository;
+
+	public ChangeNotificationHelper(
+		@Value("${rules.watch.peers}") String[] peers,
+		@Value("${rules.watch.authorization}") String authorization,
+		@Value("${rules.watch.timeout}") long timeout,
+		@Value("${rules.watch.heartbeat}") long heartbeatInterval,
+		ProfileCacheHelper profiles,
+		RulesRepositoryHelper repository
+	) {
+		logger.debug("Creating change notification helper...");
+		this.authorization = authorization;
+		// 0 means that watch connections never time out
+		this.timeout = TimeUnit.SECONDS.toMillis(timeout);
+		this.profiles = profiles;
+		this.repository = repository;
+
+		// Heartbeats keep idle connections open through proxies and detect the watchers that are gone
+		this.heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "watch-heartbeat");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.heartbeat.scheduleAtFixedRate(this::sendHeartbeat, heartbeatInterval, heartbeatInterval, TimeUnit.SECONDS);
+
+		// A missed heartbeat means the peer is unreachable
+		int readTimeout = (int) TimeUnit.SECONDS.toMillis(heartbeatInterval * 3);
+		for (String peer : peers)
+			if (peer.trim().length() > 0)
+				subscribers.add(new ChangeSubscriber(getWatchUrl(peer.trim()), authorization, readTimeout, this).start());
+		if (subscribers.isEmpty())
+			logger.warn("No peers to watch, profiles changed on other instances are only seen once their cache entry expires"
+					+ (repository.isSynced() ? " and the local store is synced again" : ""));
+		instance = this;
+	}
+
+	public static ChangeNotificationHelper getInstance() {
+		return instance;
+	}
+
+	public static String getWatchUrl(String baseUrl) {
+		return baseUrl.endsWith("/") ? baseUrl + WATCH_PATH : baseUrl + "/" + WATCH_PATH;
+	}
+
+	public String getOrigin() {
+		return origin;
+	}
+
+	// Sequence of the last change published by this instance
+	public long getSequence() {
+		return sequence.get();
+	}
+
+	public int getWatchers() {
+		return emitters.size();
+	}
+
+	public SseEmitter subscribe() throws IOException {
+		SseEmitter emitter = new SseEmitter(timeout);
+		emitter.onCompletion(() -> emitters.remove(emitter));
+		emitter.onTimeout(() -> emitters.remove(emitter));
+		emitters.add(emitter);
+
+		JSONObject ready = new JSONObject();
+		ready.put(MessageHelper.CONST_ORIGIN, origin);
+		ready.put(MessageHelper.CONST_SEQUENCE, sequence.get());
+		emitter.send(SseEmitter.event().name(ChangeSubscriber.EVENT_READY).data(ready.toString()));
+		return emitter;
+	}
+
+	public void publish(String profile, int version) {
+		JSONObject change = new JSONObject();
+		change.put(MessageHelper.CONST_ORIGIN, origin);
+		change.put(MessageHelper.CONST_SEQUENCE, sequence.incrementAndGet());
+		change.put(MessageHelper.CONST_PROFILE, profile);
+		change.put(MessageHelper.CONST_VERSION, version);
+
+		String data = change.toString();
+		for (SseEmitter emitter : emitters)
+			try {
+				emitter.send(SseEmitter.event().name(ChangeSubscriber.EVENT_CHANGE).id(Long.toString(change.getLong(MessageHelper.CONST_SEQUENCE))).data(data));
+			} catch (IOException | IllegalStateException e) {
+				remove(emitter, e);
+			}
+	}
+
+	@Override
+	public void onConnect(JSONObject event) {
+		String peer = event.optString(MessageHelper.CONST_ORIGIN);
+		if (origin.equals(peer))
+			return;
+
+		// Changes were missed if the peer published anything since the last one received, or if it restarted.
+		// The local copies are replaced first, otherwise the profiles would be compiled again from the same stale rules.
+		long current = event.getLong(MessageHelper.CONST_SEQUENCE);
+		Long last = received.put(peer, current);
+		if (last == null || last != current) {
+			try {
+				repository.resync(authorization);
+			} catch (ServiceException e) {
+				logger.error(e);
+			}
+			profiles.invalidateAll();
+		}
+	}
+
+	@Override
+	public void onChange(JSONObject event) {
+		String peer = event.optString(MessageHelper.CONST_ORIGIN);
+		if (origin.equals(peer))
+			return;
+
+		received.put(peer, event.getLong(MessageHelper.CONST_SEQUENCE));
+		String profile = event.getString(MessageHelper.CONST_PROFILE);
+		try {
+			repository.refresh(authorization, profile);
+		} catch (ServiceException e) {
+			logger.error(e);
+		}
+		profiles.refresh(authorization, profile);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		for (ChangeSubscriber subscriber : subscribers)
+			subscriber.stop();
+		heartbeat.shutdownNow();
+		for (SseEmitter emitter : emitters)
+			emitter.complete();
+	}
+
+	private void sendHeartbeat() {
+		for (SseEmitter emitter : emitters)
+			try {
+				emitter.send(SseEmitter.event().comment(""));
+			} catch (IOException | IllegalStateException e) {
+				remove(emitter, e);
+			}
+	}
+
+	private void remove(SseEmitter emitter, Exception e) {
+		emitters.remove(emitter);
+		logger.debug(e);
+		emitter.completeWithError(e);
+	}
+
+}
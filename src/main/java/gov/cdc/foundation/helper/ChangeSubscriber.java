@@ -0,0 +1,131 @@
+package gov.cdc.foundation.helper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+// Follows the server-sent events of a watch endpoint on a background thread, and reconnects when the connection is lost
+public class ChangeSubscriber {
+
+	private static final Logger logger = Logger.getLogger(ChangeSubscriber.class);
+
+	public static final String EVENT_READY = "ready";
+	public static final String EVENT_CHANGE = "change";
+
+	private static final long MIN_BACKOFF = 100;
+	private static final long MAX_BACKOFF = TimeUnit.SECONDS.toMillis(5);
+
+	public interface Listener {
+
+		// Called on every connection, changes published while disconnected are lost
+		void onConnect(JSONObject event);
+
+		void onChange(JSONObject event);
+
+	}
+
+	private final String url;
+	private final String authorization;
+	private final int readTimeout;
+	private final Listener listener;
+	private final Thread thread;
+	private volatile boolean running = true;
+
+	public ChangeSubscriber(String url, String authorization, int readTimeout, Listener listener) {
+		this.url = url;
+		this.authorization = authorization;
+		this.readTimeout = readTimeout;
+		this.listener = listener;
+		this.thread = new Thread(this::run, "watch-" + url);
+		this.thread.setDaemon(true);
+	}
+
+	public ChangeSubscriber start() {
+		thread.start();
+		return this;
+	}
+
+	// Doesn't wait for the connection to close: disconnecting blocks until the pending read returns,
+	// the thread exits at the next heartbeat or read timeout instead
+	public void stop() {
+		running = false;
+		thread.interrupt();
+	}
+
+	private void run() {
+		long backoff = MIN_BACKOFF;
+		while (running) {
+			try {
+				if (follow())
+					backoff = MIN_BACKOFF;
+			} catch (IOException e) {
+				if (running)
+					logger.warn(String.format("Lost the watch connection to %s: %s", url, e.getMessage()));
+			}
+
+			try {
+				Thread.sleep(backoff);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+			backoff = Math.min(MAX_BACKOFF, backoff * 2);
+		}
+	}
+
+	// Returns true if the connection was established
+	private boolean follow() throws IOException {
+		HttpURLConnection myConnection = (HttpURLConnection) new URL(url).openConnection();
+		myConnection.setRequestProperty("Accept", "text/event-stream");
+		if (authorization != null && authorization.length() > 0)
+			myConnection.setRequestProperty("Authorization", authorization);
+		myConnection.setReadTimeout(readTimeout);
+
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(myConnection.getInputStream(), StandardCharsets.UTF_8))) {
+			String event = null;
+			StringBuilder data = new StringBuilder();
+			String line;
+			while (running && (line = reader.readLine()) != null) {
+				if (line.isEmpty()) {
+					dispatch(event, data.toString());
+					event = null;
+					data.setLength(0);
+				} else if (line.startsWith("event:")) {
+					event = line.substring(6).trim();
+				} else if (line.startsWith("data:")) {
+					if (data.length() > 0)
+						data.append('\n');
+					data.append(line.substring(5).trim());
+				}
+				// Comments are heartbeats, ids and retries are not used
+			}
+			return true;
+		} finally {
+			myConnection.disconnect();
+		}
+	}
+
+	private void dispatch(String event, String data) {
+		if (data.isEmpty())
+			return;
+		try {
+			if (EVENT_READY.equals(event))
+				listener.onConnect(new JSONObject(data));
+			else if (EVENT_CHANGE.equals(event))
+				listener.onChange(new JSONObject(data));
+		} catch (JSONException e) {
+			logger.warn(String.format("Invalid watch event from %s: %s", url, data));
+		} catch (RuntimeException e) {
+			logger.error(e);
+		}
+	}
+
+}
@@ -1,51 +1,187 @@
 package gov.cdc.foundation.helper;
 
+import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.annotation.PreDestroy;
 
 import org.apache.log4j.Logger;
 import org.fluentd.logger.FluentLogger;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+
 @Component
 public class LoggerHelper {
 
 	private static final Logger logger = Logger.getLogger(LoggerHelper.class);
 
+	public static final String POLICY_DROP = "drop";
+	public static final String POLICY_SAMPLE = "sample";
+
+	private static final String TAG_REASON = "reason";
+	private static final long IDLE_WAIT = TimeUnit.MILLISECONDS.toNanos(5);
+
 	private static LoggerHelper instance;
-	
+
 	private String prefix;
 	private String host;
 	private int port;
-	private FluentLogger fluent;
-	
+	private volatile FluentLogger fluent;
 
-	public LoggerHelper(@Value("${logging.fluentd.host}") String host, @Value("${logging.fluentd.port}") int port, @Value("${logging.fluentd.prefix}") String prefix) {
+	private boolean async;
+	private boolean sample;
+	private int sampleRate;
+	private int batchSize;
+	private RingBuffer<LogEvent> buffer;
+	private AtomicLong sampleCounter = new AtomicLong();
+	private Counter droppedFull;
+	private Counter droppedSampled;
+	private Counter failed;
+	private Thread drainer;
+	private volatile boolean running = true;
+
+	public LoggerHelper(
+		@Value("${logging.fluentd.host}") String host,
+		@Value("${logging.fluentd.port}") int port,
+		@Value("${logging.fluentd.prefix}") String prefix,
+		@Value("${logging.fluentd.async.enabled}") boolean async,
+		@Value("${logging.fluentd.async.capacity}") int capacity,
+		@Value("${logging.fluentd.async.batch}") int batchSize,
+		@Value("${logging.fluentd.async.policy}") String policy,
+		@Value("${logging.fluentd.async.sample-rate}") int sampleRate,
+		MetricsHelper metrics
+	) {
 		logger.debug("Creating logger helper...");
 		this.host = host;
 		this.prefix = prefix;
 		this.port = port;
+		this.async = async;
+		this.sample = POLICY_SAMPLE.equalsIgnoreCase(policy);
+		this.sampleRate = Math.max(1, sampleRate);
+		this.batchSize = Math.max(1, batchSize);
+
+		droppedFull = Counter.builder(MetricsHelper.COUNTER_LOGGING_DROPPED).tag(TAG_REASON, "full").register(metrics.getRegistry());
+		droppedSampled = Counter.builder(MetricsHelper.COUNTER_LOGGING_DROPPED).tag(TAG_REASON, "sampled").register(metrics.getRegistry());
+		failed = Counter.builder(MetricsHelper.COUNTER_LOGGING_FAILED).register(metrics.getRegistry());
+
+		if (async) {
+			buffer = new RingBuffer<>(capacity);
+			Gauge.builder(MetricsHelper.GAUGE_LOGGING_BUFFER, buffer, RingBuffer::size).register(metrics.getRegistry());
+
+			drainer = new Thread(this::drain, "fluentd-logger");
+			drainer.setDaemon(true);
+			drainer.start();
+		}
 		instance = this;
 	}
-	
+
 	public static LoggerHelper getInstance() {
 		return instance;
 	}
 
+	// The data map is copied when the event is buffered, callers keep using it, ex: ErrorHandler adds the error to it
 	public void log(String action, Map<String, Object> data) {
-		FluentLogger myLogger = getLogger();
+		if (!async) {
+			send(action, data);
+			return;
+		}
+
+		// Under overload, only keep one event out of sampleRate once the buffer is three quarters full
+		if (sample && buffer.size() >= buffer.capacity() / 4 * 3 && sampleCounter.incrementAndGet() % sampleRate != 0) {
+			droppedSampled.increment();
+			return;
+		}
+
+		if (!buffer.offer(new LogEvent(action, new HashMap<>(data))))
+			droppedFull.increment();
+	}
+
+	public long getDropped() {
+		return (long) (droppedFull.count() + droppedSampled.count());
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		running = false;
+		if (drainer != null) {
+			LockSupport.unpark(drainer);
+			try {
+				drainer.join(TimeUnit.SECONDS.toMillis(5));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		FluentLogger myLogger = fluent;
 		if (myLogger != null)
-			myLogger.log(action, data);
+			myLogger.close();
+	}
+
+	private void drain() {
+		while (true) {
+			int sent = 0;
+			LogEvent event;
+			while (sent < batchSize && (event = buffer.poll()) != null) {
+				// An event that can't be sent must not stop the drainer, every later event would be dropped
+				try {
+					send(event.action, event.data);
+				} catch (RuntimeException e) {
+					logger.error(e);
+					failed.increment();
+				}
+				sent++;
+			}
+
+			if (sent > 0) {
+				FluentLogger myLogger = fluent;
+				try {
+					if (myLogger != null)
+						myLogger.flush();
+				} catch (RuntimeException e) {
+					logger.error(e);
+				}
+			} else if (running) {
+				LockSupport.parkNanos(this, IDLE_WAIT);
+			} else {
+				return;
+			}
+		}
+	}
+
+	private void send(String action, Map<String, Object> data) {
+		FluentLogger myLogger = getLogger();
+		if (myLogger != null && !myLogger.log(action, data))
+			failed.increment();
 	}
 
 	private FluentLogger getLogger() {
 		if (fluent == null)
-			try {
-				fluent = FluentLogger.getLogger(prefix, host, port);
-			} catch (NoClassDefFoundError e) {
-				logger.error(e);
+			synchronized (this) {
+				if (fluent == null)
+					try {
+						fluent = FluentLogger.getLogger(prefix, host, port);
+					} catch (NoClassDefFoundError e) {
+						logger.error(e);
+					}
 			}
 		return fluent;
 	}
 
+	private static class LogEvent {
+
+		private final String action;
+		private final Map<String, Object> data;
+
+		public LogEvent(String action, Map<String, Object> data) {
+			this.action = action;
+			this.data = data;
+		}
+
+	}
+
 }
@@ -7,14 +7,49 @@ public class MessageHelper extends AbstractMessageHelper {
 	public static final String CONST_WARNING = "warning";
 	public static final String CONST_PROFILE = "profile";
 	public static final String CONST_VALID = "valid";
+	public static final String CONST_INVALID = "invalid";
+	public static final String CONST_NB_OF_VALID = "nbOfValid";
+	public static final String CONST_NB_OF_INVALID = "nbOfInvalid";
+	public static final String CONST_ERROR = "error";
+	public static final String CONST_ERRORS = "errors";
+	public static final String CONST_DETAILS = "details";
+	public static final String CONST_TOTAL = "total";
+	public static final String CONST_RESULTS = "results";
+	public static final String CONST_INDEX = "index";
+	public static final String CONST_PARTIAL = "partial";
+	public static final String CONST_VERSION = "version";
+	public static final String CONST_ORIGIN = "origin";
+	public static final String CONST_SEQUENCE = "sequence";
+	public static final String CONST_RULES = "rules";
+
+	public static final String MODE_FAIL_FAST = "failFast";
+
+	public static final String MEDIA_TYPE_NDJSON = "application/x-ndjson";
 
 	public static final String METHOD_INDEX = "index";
 	public static final String METHOD_UPSERTRULES = "upsertRules";
 	public static final String METHOD_GETRULES = "getRules";
 	public static final String METHOD_VALIDATE = "validate";
+	public static final String METHOD_VALIDATEBATCH = "validateBatch";
+	public static final String METHOD_VALIDATESTREAM = "validateStream";
+	public static final String METHOD_GETCACHESTATS = "getCacheStats";
+	public static final String METHOD_WATCH = "watch";
+	public static final String METHOD_GETSTATISTICS = "getStatistics";
 
 	public static final String ERROR_PROFILE_IDENTIFIER_INVALID = "The profile identifier is not valid, it must match the following expression: %s";
 	public static final String ERROR_PROFILE_DOESNT_EXIST = "This profile doesn't exist.";
+	public static final String ERROR_PROFILE_NOT_CACHED = "This profile isn't compiled on this instance.";
+	public static final String ERROR_VERSION_DOESNT_EXIST = "The version %d of this profile doesn't exist.";
+	public static final String ERROR_VERSION_IMMUTABLE = "The version %s already exists and can't be overwritten.";
+	public static final String ERROR_VERSION_CONFLICT = "No version of this profile could be created after %d attempts, too many concurrent changes.";
+	public static final String ERROR_EXPLAIN_MODE_INVALID = "The explain mode is not valid, it must be one of: %s";
+	public static final String ERROR_VALIDATION_MODE_INVALID = "The validation mode is not valid, it must be: %s";
+	public static final String ERROR_STORE_INVALID = "The rules store is not valid, it must be one of: %s";
+	public static final String ERROR_OBJECT_SATURATED = "No connection to the object microservice was available in time.";
+	public static final String ERROR_RECORD_NOT_OBJECT = "The record is not a JSON object.";
+	public static final String ERROR_RULES_INVALID = "The rules are not valid: %s";
+	public static final String ERROR_RULE_INVALID = "The rule %s of %s is not valid: %s";
+	public static final String ERROR_FILE_TOO_LARGE = "The file %s is larger than %d bytes, use validate/stream for larger files.";
 
 	private MessageHelper() {
 		throw new IllegalAccessError("Helper class");
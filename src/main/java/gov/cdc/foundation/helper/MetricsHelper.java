@@ -0,0 +1,90 @@
+package gov.cdc.foundation.helper;
+
+import org.apache.log4j.Logger;
+import org.springframework.stereotype.Component;
+
+import gov.cdc.engine.result.ValidationResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+@Component
+public class MetricsHelper {
+
+	private static final Logger logger = Logger.getLogger(MetricsHelper.class);
+
+	public static final String TIMER_FETCH = "rules.profile.fetch";
+	public static final String TIMER_COMPILE = "rules.profile.compile";
+	public static final String TIMER_VALIDATE = "rules.validate";
+	public static final String TIMER_SERIALIZE = "rules.response.serialize";
+	public static final String COUNTER_MESSAGES = "rules.messages";
+	public static final String COUNTER_FAILURES = "rules.failures";
+	public static final String COUNTER_LOGGING_DROPPED = "rules.logging.dropped";
+	public static final String COUNTER_LOGGING_FAILED = "rules.logging.failed";
+	public static final String GAUGE_LOGGING_BUFFER = "rules.logging.buffer";
+	public static final String TIMER_OBJECT_WAIT = "rules.object.wait";
+	public static final String COUNTER_OBJECT_SATURATED = "rules.object.saturated";
+	public static final String GAUGE_OBJECT_ACTIVE = "rules.object.connections.active";
+	public static final String GAUGE_OBJECT_PENDING = "rules.object.connections.pending";
+	public static final String GAUGE_OBJECT_MAX = "rules.object.connections.max";
+	public static final String GAUGE_RESULTS_SIZE = "rules.results.bytes";
+
+	private static final String TAG_PROFILE = "profile";
+	private static final String TAG_RESULT = "result";
+	private static final String TAG_RULE = "rule";
+	private static final String NONE = "none";
+
+	private static MetricsHelper instance;
+
+	private MeterRegistry registry;
+
+	public MetricsHelper(MeterRegistry registry) {
+		logger.debug("Creating metrics helper...");
+		this.registry = registry;
+		instance = this;
+	}
+
+	public static MetricsHelper getInstance() {
+		return instance;
+	}
+
+	public MeterRegistry getRegistry() {
+		return registry;
+	}
+
+	public Timer.Sample start() {
+		return Timer.start(registry);
+	}
+
+	public void stop(Timer.Sample sample, String name, String profile) {
+		sample.stop(timer(name, profile));
+	}
+
+	public Timer timer(String name, String profile) {
+		return Timer.builder(name)
+				.tag(TAG_PROFILE, tagValue(profile))
+				.publishPercentileHistogram()
+				.register(registry);
+	}
+
+	public void countMessage(String profile, boolean valid) {
+		Counter.builder(COUNTER_MESSAGES)
+				.tag(TAG_PROFILE, tagValue(profile))
+				.tag(TAG_RESULT, valid ? MessageHelper.CONST_VALID : MessageHelper.CONST_INVALID)
+				.register(registry)
+				.increment();
+	}
+
+	public void countFailure(String profile, ValidationResult result) {
+		Counter.builder(COUNTER_FAILURES)
+				.tag(TAG_PROFILE, tagValue(profile))
+				.tag(TAG_RULE, tagValue(result.getDescription()))
+				.register(registry)
+				.increment();
+	}
+
+	private String tagValue(Object value) {
+		return value == null ? NONE : value.toString();
+	}
+
+}
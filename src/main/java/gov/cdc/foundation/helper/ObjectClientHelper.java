@@ -0,0 +1,122 @@
+package gov.cdc.foundation.helper;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import gov.cdc.helper.common.ServiceException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Timer;
+
+// Connections to the object microservice. The SDK helpers go through the JDK HTTP client, which keeps idle connections
+// alive in a process wide pool, configured with the JDK properties by configure when the application starts.
+// Calls are limited to the number of pooled connections: above that, the JDK opens a new connection and closes it after the call.
+@Component
+public class ObjectClientHelper {
+
+	private static final Logger logger = Logger.getLogger(ObjectClientHelper.class);
+
+	private static final String PROPERTY_KEEP_ALIVE = "http.keepAlive";
+	private static final String PROPERTY_MAX_CONNECTIONS = "http.maxConnections";
+	private static final String PROPERTY_CONNECT_TIMEOUT = "sun.net.client.defaultConnectTimeout";
+	private static final String PROPERTY_READ_TIMEOUT = "sun.net.client.defaultReadTimeout";
+
+	private static ObjectClientHelper instance;
+
+	private int maxConnections;
+	private long acquireTimeout;
+	private Semaphore connections;
+	private Timer wait;
+	private Counter saturated;
+
+	public ObjectClientHelper(
+		@Value("${rules.object.max-connections}") int maxConnections,
+		@Value("${rules.object.acquire-timeout}") long acquireTimeout,
+		MetricsHelper metrics
+	) {
+		logger.debug("Creating object client helper...");
+		this.maxConnections = Math.max(1, maxConnections);
+		this.acquireTimeout = acquireTimeout;
+		this.connections = new Semaphore(this.maxConnections, true);
+		this.wait = Timer.builder(MetricsHelper.TIMER_OBJECT_WAIT).publishPercentileHistogram().register(metrics.getRegistry());
+		this.saturated = Counter.builder(MetricsHelper.COUNTER_OBJECT_SATURATED).register(metrics.getRegistry());
+		Gauge.builder(MetricsHelper.GAUGE_OBJECT_ACTIVE, this, ObjectClientHelper::getActive).register(metrics.getRegistry());
+		Gauge.builder(MetricsHelper.GAUGE_OBJECT_PENDING, connections, Semaphore::getQueueLength).register(metrics.getRegistry());
+		Gauge.builder(MetricsHelper.GAUGE_OBJECT_MAX, this, ObjectClientHelper::getMaxConnections).register(metrics.getRegistry());
+		instance = this;
+	}
+
+	public static ObjectClientHelper getInstance() {
+		return instance;
+	}
+
+	// Sets the JDK properties of the process, read once by the JDK when the first connection is opened.
+	// Only called by the main method, so that the tests and other embedders keep their own settings.
+	public static void configure(Environment environment) {
+		int maxConnections = Math.max(1, environment.getRequiredProperty("rules.object.max-connections", Integer.class));
+		int connectTimeout = environment.getRequiredProperty("rules.object.connect-timeout", Integer.class);
+		int readTimeout = environment.getRequiredProperty("rules.object.read-timeout", Integer.class);
+		setDefault(PROPERTY_KEEP_ALIVE, environment.getRequiredProperty("rules.object.keep-alive"));
+		setDefault(PROPERTY_MAX_CONNECTIONS, Integer.toString(maxConnections));
+		if (connectTimeout > 0)
+			setDefault(PROPERTY_CONNECT_TIMEOUT, Integer.toString(connectTimeout));
+		if (readTimeout > 0)
+			setDefault(PROPERTY_READ_TIMEOUT, Integer.toString(readTimeout));
+	}
+
+	private static void setDefault(String key, String value) {
+		if (System.getProperty(key) == null)
+			System.setProperty(key, value);
+		else
+			logger.info(String.format("Keeping %s=%s from the command line", key, System.getProperty(key)));
+	}
+
+	public int getMaxConnections() {
+		return maxConnections;
+	}
+
+	public int getActive() {
+		return maxConnections - connections.availablePermits();
+	}
+
+	// Runs a call to the object microservice once a pooled connection is free
+	public <T> T execute(ObjectCall<T> call) throws ServiceException {
+		long start = System.nanoTime();
+		try {
+			if (!connections.tryAcquire(acquireTimeout, TimeUnit.MILLISECONDS)) {
+				saturated.increment();
+				throw new ServiceException(MessageHelper.ERROR_OBJECT_SATURATED);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ServiceException(e);
+		} finally {
+			wait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+		}
+
+		try {
+			return call.call();
+		} finally {
+			connections.release();
+		}
+	}
+
+	// Runs the call directly when there is no helper, ex: outside of the application context
+	public static <T> T call(ObjectCall<T> call) throws ServiceException {
+		ObjectClientHelper helper = getInstance();
+		return helper != null ? helper.execute(call) : call.call();
+	}
+
+	@FunctionalInterface
+	public interface ObjectCall<T> {
+
+		T call() throws ServiceException;
+
+	}
+
+}
@@ -0,0 +1,332 @@
+package gov.cdc.foundation.helper;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import gov.cdc.engine.ValidatorException;
+import gov.cdc.foundation.engine.CompiledProfile;
+import gov.cdc.foundation.engine.ProfileOptions;
+import gov.cdc.helper.common.ServiceException;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+@Component
+public class ProfileCacheHelper {
+
+	private static final Logger logger = Logger.getLogger(ProfileCacheHelper.class);
+
+	private static final String CACHE_NAME = "profiles";
+
+	public static final String OPTION_REORDER = "reorder";
+	public static final String OPTION_COMPILED = "compiled";
+
+	private static ProfileCacheHelper instance;
+
+	private boolean enabled;
+	private long size;
+	private ProfileOptions options;
+	private Cache<String, CompiledProfile> cache;
+	// Profiles and versions that don't exist, so that repeated misses don't reach the repository
+	private Cache<String, Boolean> missing;
+	// Loads in progress when the cache is disabled, concurrent requests for a profile share them
+	private ConcurrentMap<String, CompletableFuture<CompiledProfile>> loading = new ConcurrentHashMap<>();
+	private MetricsHelper metrics;
+	private RulesRepositoryHelper repository;
+
+	public ProfileCacheHelper(
+		@Value("${rules.cache.enabled}") boolean enabled,
+		@Value("${rules.cache.size}") long size,
+		@Value("${rules.cache.ttl}") long ttl,
+		@Value("${rules.cache.negative-ttl}") long negativeTtl,
+		@Value("${rules.cache.pool}") int poolSize,
+		@Value("${validation.workers}") int workers,
+		@Value("${rules.segments.operators}") String[] segmentOperators,
+		@Value("${rules.stats.reorder}") boolean reorder,
+		@Value("${rules.stats.sample-rate}") int statsSampleRate,
+		@Value("${rules.compile.enabled}") boolean compiled,
+		@Value("${rules.projection.enabled}") boolean projected,
+		MetricsHelper metrics,
+		RulesRepositoryHelper repository
+	) {
+		logger.debug("Creating profile cache helper...");
+		this.enabled = enabled;
+		this.size = size;
+		this.options = new ProfileOptions();
+		// Every validation worker can keep its validator, otherwise the ones beyond the pool size create a validator per message
+		this.options.setPoolSize(poolSize > 0 ? poolSize : ValidationExecutorHelper.getWorkers(workers));
+		this.options.setSegmentOperators(new HashSet<>(Arrays.asList(segmentOperators)));
+		this.options.setReorder(reorder);
+		this.options.setStatsSampleRate(statsSampleRate);
+		this.options.setCompiled(compiled);
+		this.options.setProjected(projected);
+		this.metrics = metrics;
+		this.repository = repository;
+		this.cache = Caffeine.newBuilder()
+				.maximumSize(size)
+				.expireAfterWrite(ttl, TimeUnit.SECONDS)
+				.recordStats()
+				.build();
+		this.missing = Caffeine.newBuilder()
+				.maximumSize(size)
+				.expireAfterWrite(Math.max(0, negativeTtl), TimeUnit.SECONDS)
+				.build();
+		CaffeineCacheMetrics.monitor(metrics.getRegistry(), cache, CACHE_NAME);
+		instance = this;
+	}
+
+	public static ProfileCacheHelper getInstance() {
+		return instance;
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public long getMaximumSize() {
+		return size;
+	}
+
+	// Options of the profiles compiled from now on
+	public ProfileOptions getOptions() {
+		return options;
+	}
+
+	public CompiledProfile get(String authorizationHeader, String profile) throws ServiceException {
+		return get(authorizationHeader, profile, null);
+	}
+
+	// Only the profiles already compiled, nothing is loaded
+	public CompiledProfile getCached(String profile) {
+		return cache.getIfPresent(profile);
+	}
+
+	// Versions are immutable, so they are cached under their own key and never need to be invalidated.
+	// Concurrent requests for a profile that is not cached wait for a single load, the cache computes it once per key.
+	public CompiledProfile get(String authorizationHeader, String profile, Integer version) throws ServiceException {
+		String key = version == null ? profile : RulesRepositoryHelper.getVersionKey(profile, version);
+		if (!enabled)
+			return loadShared(key, authorizationHeader, profile, version);
+
+		// Published profiles are found even when a load that found nothing finished after them
+		CompiledProfile cached = cache.getIfPresent(key);
+		if (cached != null)
+			return cached;
+		if (missing.getIfPresent(key) != null)
+			return null;
+		try {
+			return cache.get(key, k -> {
+				// Requests that were waiting for a load that found nothing don't try again
+				if (missing.getIfPresent(k) != null)
+					return null;
+				try {
+					CompiledProfile compiled = load(authorizationHeader, profile, version);
+					if (compiled == null)
+						missing.put(k, Boolean.TRUE);
+					return compiled;
+				} catch (ServiceException e) {
+					throw new ProfileLoadingException(e);
+				}
+			});
+		} catch (ProfileLoadingException e) {
+			throw e.getCause();
+		}
+	}
+
+	// Swaps the compiled rules of a profile for a new version, validations still holding the previous one finish with it
+	public void publish(String profile, JSONObject rules, int version) {
+		if (!enabled)
+			return;
+
+		try {
+			publish(profile, compileStored(profile, new JSONObject(rules.toString())), version);
+		} catch (ServiceException e) {
+			logger.error(e);
+			missing.invalidate(profile);
+			missing.invalidate(RulesRepositoryHelper.getVersionKey(profile, version));
+			cache.invalidate(profile);
+		}
+	}
+
+	// Same with rules compiled before they were stored
+	public void publish(String profile, CompiledProfile compiled, int version) {
+		if (!enabled)
+			return;
+
+		compiled.setVersion(version);
+		// Concurrent upserts may publish out of order, the latest version is kept
+		cache.asMap().merge(profile, compiled, (previous, latest) -> previous.getVersion() > latest.getVersion() ? previous : latest);
+		cache.put(RulesRepositoryHelper.getVersionKey(profile, version), compiled);
+		// After the puts, so that a load in progress can't mark the profile as missing again
+		missing.invalidate(profile);
+		missing.invalidate(RulesRepositoryHelper.getVersionKey(profile, version));
+	}
+
+	// Compiles rules that were already fetched, ex: by the warm-up. A version published meanwhile is kept.
+	public CompiledProfile preload(String profile, JSONObject rules) throws ServiceException {
+		CompiledProfile compiled = compileStored(profile, rules);
+		if (enabled)
+			cache.asMap().merge(profile, compiled, (previous, latest) -> previous.getVersion() >= latest.getVersion() ? previous : latest);
+		return compiled;
+	}
+
+	// Compiles rules before they are stored, so that invalid rules are rejected instead of failing every validation
+	public CompiledProfile compileNew(String profile, JSONObject rules) throws ServiceException {
+		JSONObject source = new JSONObject(rules.toString());
+		try {
+			return compileStored(profile, source);
+		} catch (ServiceException e) {
+			if (!(e.getCause() instanceof ValidatorException))
+				throw e;
+			throw new ServiceException(CompiledProfile.describeError(source, (ValidatorException) e.getCause(), options.getValidatorFactory()));
+		}
+	}
+
+	// Compiles the latest rules again now, so that no request has to wait for it
+	public void refresh(String authorizationHeader, String profile) {
+		invalidate(profile);
+		if (!enabled)
+			return;
+
+		try {
+			get(authorizationHeader, profile);
+		} catch (ServiceException e) {
+			logger.error(e);
+		}
+	}
+
+	public void invalidate(String profile) {
+		cache.invalidate(profile);
+		missing.invalidate(profile);
+	}
+
+	// Also forgets the missing versions, as a peer may have created them
+	public void invalidateAll() {
+		cache.invalidateAll();
+		missing.invalidateAll();
+	}
+
+	public JSONObject getStats() {
+		CacheStats stats = cache.stats();
+		JSONObject json = new JSONObject();
+		json.put("enabled", enabled);
+		json.put("size", cache.estimatedSize());
+		json.put("hits", stats.hitCount());
+		json.put("misses", stats.missCount());
+		json.put("hitRate", stats.hitRate());
+		json.put("evictions", stats.evictionCount());
+		json.put("loads", stats.loadSuccessCount());
+		json.put("loadFailures", stats.loadFailureCount());
+		json.put("averageLoadPenalty", stats.averageLoadPenalty());
+		json.put("missing", missing.estimatedSize());
+		return json;
+	}
+
+	// Without cache, a load is only shared by the requests that arrive while it is in progress
+	private CompiledProfile loadShared(String key, String authorizationHeader, String profile, Integer version) throws ServiceException {
+		CompletableFuture<CompiledProfile> future = new CompletableFuture<>();
+		CompletableFuture<CompiledProfile> inProgress = loading.putIfAbsent(key, future);
+		if (inProgress != null)
+			return await(inProgress);
+
+		try {
+			CompiledProfile compiled = load(authorizationHeader, profile, version);
+			future.complete(compiled);
+			return compiled;
+		} catch (ServiceException | RuntimeException e) {
+			future.completeExceptionally(e);
+			throw e;
+		} finally {
+			loading.remove(key, future);
+		}
+	}
+
+	private static CompiledProfile await(CompletableFuture<CompiledProfile> future) throws ServiceException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ServiceException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof ServiceException)
+				throw (ServiceException) e.getCause();
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new ServiceException(e.getCause());
+		}
+	}
+
+	private CompiledProfile load(String authorizationHeader, String profile, Integer version) throws ServiceException {
+		// Get the rules config
+		JSONObject rules = null;
+		Timer.Sample sample = metrics.start();
+		try {
+			rules = repository.get(authorizationHeader, profile, version);
+		} finally {
+			// Profiles that don't exist or failed to load share one series, so that any requested name can't create one
+			metrics.stop(sample, MetricsHelper.TIMER_FETCH, rules != null ? profile : null);
+		}
+
+		if (rules == null)
+			return null;
+		return compileStored(profile, rules);
+	}
+
+	// Compiles rules as stored in the repository, without their metadata fields
+	private CompiledProfile compileStored(String profile, JSONObject rules) throws ServiceException {
+		rules.remove(RulesRepositoryHelper.FIELD_ID);
+		Object version = rules.remove(RulesRepositoryHelper.FIELD_VERSION);
+		Object profileOptions = rules.remove(RulesRepositoryHelper.FIELD_OPTIONS);
+
+		CompiledProfile compiled = compile(profile, rules);
+		if (version instanceof Number)
+			compiled.setVersion(((Number) version).intValue());
+		if (profileOptions instanceof JSONObject) {
+			compiled.setReorder(((JSONObject) profileOptions).optBoolean(OPTION_REORDER, options.isReorder()));
+			if (((JSONObject) profileOptions).has(OPTION_COMPILED))
+				compiled.setCompiled(((JSONObject) profileOptions).optBoolean(OPTION_COMPILED, options.isCompiled()));
+		}
+		return compiled;
+	}
+
+	public CompiledProfile compile(String profile, JSONObject rules) throws ServiceException {
+		Timer.Sample sample = metrics.start();
+		CompiledProfile compiled = null;
+		try {
+			compiled = new CompiledProfile(profile, rules, options);
+			compiled.setFailureListener(metrics::countFailure);
+			return compiled;
+		} finally {
+			metrics.stop(sample, MetricsHelper.TIMER_COMPILE, compiled != null ? profile : null);
+		}
+	}
+
+	private static class ProfileLoadingException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		public ProfileLoadingException(ServiceException cause) {
+			super(cause);
+		}
+
+		@Override
+		public synchronized ServiceException getCause() {
+			return (ServiceException) super.getCause();
+		}
+
+	}
+
+}
@@ -0,0 +1,180 @@
+package gov.cdc.foundation.helper;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import gov.cdc.foundation.engine.CompiledProfile;
+import gov.cdc.foundation.engine.ExplainMode;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+// Results of validate/{profile} for byte-identical payloads, stored as the bytes of the response.
+// Keys contain the fingerprint of the rules the result was computed with, so a result is never returned once the rules changed.
+@Component
+public class ResultCacheHelper {
+
+	private static final Logger logger = Logger.getLogger(ResultCacheHelper.class);
+
+	private static final String CACHE_NAME = "results";
+	// Memory used by an entry besides the response body, ex: key, hashes and cache node
+	private static final int ENTRY_OVERHEAD = 200;
+
+	private static ResultCacheHelper instance;
+
+	private boolean enabled;
+	private long maxBytes;
+	private Cache<Key, Result> cache;
+
+	public ResultCacheHelper(
+		@Value("${rules.results.enabled}") boolean enabled,
+		@Value("${rules.results.max-size}") long maxSize,
+		@Value("${rules.results.ttl}") long ttl,
+		MetricsHelper metrics
+	) {
+		logger.debug("Creating result cache helper...");
+		this.enabled = enabled;
+		this.maxBytes = maxSize * 1024 * 1024;
+		this.cache = Caffeine.newBuilder()
+				.maximumWeight(maxBytes)
+				.weigher((Key key, Result result) -> ENTRY_OVERHEAD + result.body.length)
+				.expireAfterWrite(ttl, TimeUnit.SECONDS)
+				.recordStats()
+				.build();
+		if (enabled) {
+			CaffeineCacheMetrics.monitor(metrics.getRegistry(), cache, CACHE_NAME);
+			Gauge.builder(MetricsHelper.GAUGE_RESULTS_SIZE, this, ResultCacheHelper::getWeightedSize).register(metrics.getRegistry());
+		}
+		instance = this;
+	}
+
+	public static ResultCacheHelper getInstance() {
+		return instance;
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	// SHA-256 of the payload, a collision made on purpose with a faster hash would return the result of another message
+	public Key key(CompiledProfile rules, byte[] payload, ExplainMode explain, int maxErrors) {
+		try {
+			byte[] hash = MessageDigest.getInstance("SHA-256").digest(payload);
+			return new Key(rules.getProfile(), rules.getVersion(), rules.getFingerprint(), explain, maxErrors, hash);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public Result get(Key key) {
+		return cache.getIfPresent(key);
+	}
+
+	public Result put(Key key, JSONObject response) {
+		Result result = new Result(response.getBoolean(MessageHelper.CONST_VALID), response.getInt(MessageHelper.CONST_ERRORS), response.toString().getBytes(StandardCharsets.UTF_8));
+		cache.put(key, result);
+		return result;
+	}
+
+	public void invalidateAll() {
+		cache.invalidateAll();
+	}
+
+	public long getWeightedSize() {
+		return cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L);
+	}
+
+	public JSONObject getStats() {
+		// Pending evictions are done first, so that the sizes are accurate
+		cache.cleanUp();
+		CacheStats stats = cache.stats();
+		JSONObject json = new JSONObject();
+		json.put("enabled", enabled);
+		json.put("size", cache.estimatedSize());
+		json.put("bytes", getWeightedSize());
+		json.put("maxBytes", maxBytes);
+		json.put("hits", stats.hitCount());
+		json.put("misses", stats.missCount());
+		json.put("hitRate", stats.hitRate());
+		json.put("evictions", stats.evictionCount());
+		return json;
+	}
+
+	public static final class Key {
+
+		private final String profile;
+		private final int version;
+		private final String fingerprint;
+		private final ExplainMode explain;
+		private final int maxErrors;
+		private final byte[] hash;
+		private final int hashCode;
+
+		private Key(String profile, int version, String fingerprint, ExplainMode explain, int maxErrors, byte[] hash) {
+			this.profile = profile;
+			this.version = version;
+			this.fingerprint = fingerprint;
+			this.explain = explain;
+			this.maxErrors = maxErrors;
+			this.hash = hash;
+			this.hashCode = Objects.hash(profile, version, fingerprint, explain, maxErrors, Arrays.hashCode(hash));
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			return version == other.version && maxErrors == other.maxErrors && explain == other.explain
+					&& Objects.equals(profile, other.profile) && fingerprint.equals(other.fingerprint) && Arrays.equals(hash, other.hash);
+		}
+
+	}
+
+	public static final class Result {
+
+		private final boolean valid;
+		private final int errors;
+		private final byte[] body;
+
+		private Result(boolean valid, int errors, byte[] body) {
+			this.valid = valid;
+			this.errors = errors;
+			this.body = body;
+		}
+
+		public boolean isValid() {
+			return valid;
+		}
+
+		public int getErrors() {
+			return errors;
+		}
+
+		// UTF-8 JSON response
+		public byte[] getBody() {
+			return body;
+		}
+
+	}
+
+}
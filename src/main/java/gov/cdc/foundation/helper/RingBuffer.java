@@ -0,0 +1,72 @@
+package gov.cdc.foundation.helper;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Bounded lock-free multi-producer queue (D. Vyukov's array based queue), offer() fails instead of blocking when it is full
+class RingBuffer<E> {
+
+	private final int mask;
+	private final AtomicReferenceArray<E> buffer;
+	private final AtomicLongArray sequences;
+	private final AtomicLong head = new AtomicLong();
+	private final AtomicLong tail = new AtomicLong();
+
+	RingBuffer(int capacity) {
+		int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+		this.mask = size - 1;
+		this.buffer = new AtomicReferenceArray<>(size);
+		this.sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++)
+			sequences.set(i, i);
+	}
+
+	int capacity() {
+		return mask + 1;
+	}
+
+	int size() {
+		return (int) Math.max(0, tail.get() - head.get());
+	}
+
+	boolean offer(E element) {
+		long position = tail.get();
+		while (true) {
+			int index = (int) (position & mask);
+			long difference = sequences.get(index) - position;
+			if (difference == 0) {
+				if (tail.compareAndSet(position, position + 1)) {
+					buffer.lazySet(index, element);
+					sequences.lazySet(index, position + 1);
+					return true;
+				}
+			} else if (difference < 0) {
+				// The slot hasn't been consumed yet, the buffer is full
+				return false;
+			}
+			position = tail.get();
+		}
+	}
+
+	E poll() {
+		long position = head.get();
+		while (true) {
+			int index = (int) (position & mask);
+			long difference = sequences.get(index) - (position + 1);
+			if (difference == 0) {
+				if (head.compareAndSet(position, position + 1)) {
+					E element = buffer.get(index);
+					buffer.lazySet(index, null);
+					sequences.lazySet(index, position + mask + 1);
+					return element;
+				}
+			} else if (difference < 0) {
+				// Nothing was published in the slot yet, the buffer is empty
+				return null;
+			}
+			position = head.get();
+		}
+	}
+
+}
@@ -0,0 +1,181 @@
+package gov.cdc.foundation.helper;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.log4j.Logger;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import gov.cdc.foundation.repository.LocalRulesRepository;
+import gov.cdc.foundation.repository.ObjectRulesRepository;
+import gov.cdc.foundation.repository.RulesRepository;
+import gov.cdc.helper.common.ServiceException;
+
+@Component
+public class RulesRepositoryHelper {
+
+	private static final Logger logger = Logger.getLogger(RulesRepositoryHelper.class);
+
+	public static final String STORE_OBJECT = "object";
+	public static final String STORE_LOCAL = "local";
+
+	public static final String FIELD_ID = "_id";
+	public static final String FIELD_VERSION = "_version";
+	// Per profile settings, ex: {"reorder": true}
+	public static final String FIELD_OPTIONS = "_options";
+
+	// Not allowed in profile identifiers, so version keys never collide with a profile
+	public static final String VERSION_SEPARATOR = "~v";
+	// Versions tried by a save when other instances create the same ones at the same time
+	private static final int MAX_VERSION_ATTEMPTS = 10;
+
+	private static RulesRepositoryHelper instance;
+
+	private LocalRulesRepository local;
+	private RulesRepository remote;
+
+	public RulesRepositoryHelper(@Value("${rules.store.type}") String type, @Value("${rules.store.path}") String path, @Value("${rules.store.sync}") boolean sync) throws IOException {
+		logger.debug("Creating rules repository helper...");
+		if (STORE_LOCAL.equalsIgnoreCase(type)) {
+			local = new LocalRulesRepository(Paths.get(path));
+			// The object microservice is then only used to fill and back up the local store
+			if (sync)
+				remote = new ObjectRulesRepository();
+		} else if (STORE_OBJECT.equalsIgnoreCase(type)) {
+			remote = new ObjectRulesRepository();
+		} else {
+			throw new IllegalArgumentException(String.format(MessageHelper.ERROR_STORE_INVALID, STORE_OBJECT + ", " + STORE_LOCAL));
+		}
+		instance = this;
+	}
+
+	public static RulesRepositoryHelper getInstance() {
+		return instance;
+	}
+
+	public static String getVersionKey(String profile, int version) {
+		return profile + VERSION_SEPARATOR + version;
+	}
+
+	public static boolean isVersionKey(String key) {
+		return key.contains(VERSION_SEPARATOR);
+	}
+
+	public JSONObject get(String authorizationHeader, String profile) throws ServiceException {
+		return get(authorizationHeader, profile, null);
+	}
+
+	// Latest rules of every profile, the local store may only have part of them when it is synced
+	public Map<String, JSONObject> findLatest(String authorizationHeader) throws ServiceException {
+		return remote != null ? remote.findLatest(authorizationHeader) : local.findLatest(authorizationHeader);
+	}
+
+	// Returns the latest rules when no version is provided
+	public JSONObject get(String authorizationHeader, String profile, Integer version) throws ServiceException {
+		return read(authorizationHeader, version == null ? profile : getVersionKey(profile, version));
+	}
+
+	// Every save creates a new immutable version, then points the profile to it.
+	// The current version comes from the object microservice when it is used, the local copy of another instance may be stale.
+	// Versions are created with a call that fails when the key is taken, so two instances saving at the same time get two versions.
+	public synchronized int save(String authorizationHeader, String profile, JSONObject rules) throws ServiceException {
+		JSONObject current = remote != null ? remote.get(authorizationHeader, profile) : local.get(authorizationHeader, profile);
+		int version = current == null ? 1 : current.optInt(FIELD_VERSION, 0) + 1;
+
+		JSONObject versioned = new JSONObject(rules.toString());
+		versioned.remove(FIELD_ID);
+		for (int attempt = 1; ; attempt++, version++) {
+			versioned.put(FIELD_VERSION, version);
+			if (create(authorizationHeader, getVersionKey(profile, version), versioned))
+				break;
+			if (attempt == MAX_VERSION_ATTEMPTS)
+				throw new ServiceException(String.format(MessageHelper.ERROR_VERSION_CONFLICT, attempt));
+			logger.debug(String.format("The version %d of %s was created by another instance", version, profile));
+		}
+		write(authorizationHeader, profile, versioned);
+		return version;
+	}
+
+	// Fetches the latest rules of a profile from the object microservice again, when it backs the local store
+	public void refresh(String authorizationHeader, String profile) throws ServiceException {
+		if (local == null || remote == null)
+			return;
+
+		JSONObject rules = remote.get(authorizationHeader, profile);
+		if (rules != null)
+			local.save(authorizationHeader, profile, rules);
+	}
+
+	private JSONObject read(String authorizationHeader, String key) throws ServiceException {
+		if (local == null)
+			return remote.get(authorizationHeader, key);
+
+		JSONObject rules = local.get(authorizationHeader, key);
+		if (rules == null && remote != null) {
+			rules = remote.get(authorizationHeader, key);
+			if (rules != null)
+				local.save(authorizationHeader, key, rules);
+		}
+		return rules;
+	}
+
+	// Replaces the local copies that differ from the latest rules in the object microservice, ex: profiles changed by another instance.
+	// Returns the profiles that were replaced, versions aren't synced as they never change.
+	public Set<String> resync(String authorizationHeader) throws ServiceException {
+		if (!isSynced())
+			return Collections.emptySet();
+
+		Set<String> updated = new HashSet<>();
+		for (Map.Entry<String, JSONObject> entry : remote.findLatest(authorizationHeader).entrySet()) {
+			JSONObject rules = entry.getValue();
+			JSONObject copy = local.get(authorizationHeader, entry.getKey());
+			if (copy == null || !copy.similar(rules)) {
+				local.save(authorizationHeader, entry.getKey(), rules);
+				updated.add(entry.getKey());
+			}
+		}
+		return updated;
+	}
+
+	private boolean create(String authorizationHeader, String key, JSONObject rules) throws ServiceException {
+		if (remote == null)
+			return local.create(authorizationHeader, key, rules);
+		if (!remote.create(authorizationHeader, key, rules))
+			return false;
+		if (local != null)
+			local.save(authorizationHeader, key, rules);
+		return true;
+	}
+
+	private void write(String authorizationHeader, String key, JSONObject rules) throws ServiceException {
+		// The object microservice stays the source of truth when it is used
+		if (remote != null)
+			remote.save(authorizationHeader, key, rules);
+		if (local != null)
+			local.save(authorizationHeader, key, rules);
+	}
+
+	public boolean isLocal() {
+		return local != null;
+	}
+
+	// True when the local store is backed by the object microservice
+	public boolean isSynced() {
+		return local != null && remote != null;
+	}
+
+	@PreDestroy
+	public void shutdown() throws IOException {
+		if (local != null)
+			local.close();
+	}
+
+}
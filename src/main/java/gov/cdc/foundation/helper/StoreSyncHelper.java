@@ -0,0 +1,83 @@
+package gov.cdc.foundation.helper;
+
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import gov.cdc.helper.common.ServiceException;
+
+// Keeps the local store in line with the object microservice, which stays the source of truth: the local copies are checked at startup,
+// then every interval, so that the profiles changed by other instances are seen even when no change notification reached this one
+@Component
+public class StoreSyncHelper {
+
+	private static final Logger logger = Logger.getLogger(StoreSyncHelper.class);
+
+	private static StoreSyncHelper instance;
+
+	private String authorization;
+	private ProfileCacheHelper profiles;
+	private RulesRepositoryHelper repository;
+	private ScheduledExecutorService scheduler;
+
+	public StoreSyncHelper(
+		@Value("${rules.store.resync}") long interval,
+		@Value("${rules.store.authorization}") String authorization,
+		ProfileCacheHelper profiles,
+		RulesRepositoryHelper repository
+	) {
+		logger.debug("Creating store sync helper...");
+		this.authorization = authorization;
+		this.profiles = profiles;
+		this.repository = repository;
+		if (repository.isSynced() && interval >= 0) {
+			this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "store-sync");
+				thread.setDaemon(true);
+				return thread;
+			});
+			// 0 means that the local store is only synced at startup
+			if (interval > 0)
+				scheduler.scheduleWithFixedDelay(this::resyncQuietly, 0, interval, TimeUnit.SECONDS);
+			else
+				scheduler.execute(this::resyncQuietly);
+		}
+		instance = this;
+	}
+
+	public static StoreSyncHelper getInstance() {
+		return instance;
+	}
+
+	// Replaces the stale local copies, then drops the profiles compiled from them
+	public Set<String> resync() throws ServiceException {
+		Set<String> updated = repository.resync(authorization);
+		for (String profile : updated)
+			profiles.invalidate(profile);
+		if (!updated.isEmpty())
+			logger.info(String.format("%d profile(s) updated from the object microservice", updated.size()));
+		return updated;
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		if (scheduler != null)
+			scheduler.shutdownNow();
+	}
+
+	private void resyncQuietly() {
+		try {
+			resync();
+		} catch (ServiceException | RuntimeException e) {
+			logger.error("The local store can't be synced with the object microservice", e);
+		}
+	}
+
+}
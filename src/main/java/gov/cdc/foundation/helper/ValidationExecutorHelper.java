@@ -0,0 +1,102 @@
+package gov.cdc.foundation.helper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.log4j.Logger;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import gov.cdc.foundation.engine.MessageValidator;
+import gov.cdc.foundation.engine.ValidationStream;
+import gov.cdc.helper.common.ServiceException;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+
+@Component
+public class ValidationExecutorHelper {
+
+	private static final Logger logger = Logger.getLogger(ValidationExecutorHelper.class);
+
+	private static final String EXECUTOR_NAME = "validation";
+
+	private static ValidationExecutorHelper instance;
+
+	private int workers;
+	private int window;
+	private ForkJoinPool pool;
+
+	public ValidationExecutorHelper(@Value("${validation.workers}") int workers, @Value("${validation.window}") int window, MetricsHelper metrics) {
+		logger.debug("Creating validation executor helper...");
+		this.workers = getWorkers(workers);
+		this.window = window > 0 ? window : this.workers * 4;
+		if (this.workers > 1) {
+			this.pool = new ForkJoinPool(this.workers);
+			ExecutorServiceMetrics.monitor(metrics.getRegistry(), pool, EXECUTOR_NAME);
+		}
+		instance = this;
+	}
+
+	public static ValidationExecutorHelper getInstance() {
+		return instance;
+	}
+
+	public int getWorkers() {
+		return workers;
+	}
+
+	// Number of workers for the configured value, 0 means one per available processor
+	public static int getWorkers(int workers) {
+		return workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+	}
+
+	public int getWindow() {
+		return window;
+	}
+
+	public ExecutorService getExecutor() {
+		return pool;
+	}
+
+	public ValidationStream newStream(MessageValidator validator) {
+		return new ValidationStream(validator, pool, window);
+	}
+
+	public List<JSONObject> validateAll(List<Callable<JSONObject>> tasks) throws ServiceException {
+		List<JSONObject> results = new ArrayList<>(tasks.size());
+		try {
+			if (pool == null) {
+				for (Callable<JSONObject> task : tasks)
+					results.add(task.call());
+			} else {
+				// Results are collected in input order
+				for (Future<JSONObject> future : pool.invokeAll(tasks))
+					results.add(future.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ServiceException(e);
+		} catch (ExecutionException e) {
+			throw new ServiceException(e.getCause());
+		} catch (ServiceException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new ServiceException(e);
+		}
+		return results;
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		if (pool != null)
+			pool.shutdown();
+	}
+
+}
@@ -0,0 +1,130 @@
+package gov.cdc.foundation.helper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import gov.cdc.helper.common.ServiceException;
+
+// Fetches and compiles every stored profile ahead of the first requests
+@Component
+public class WarmupHelper {
+
+	private static final Logger logger = Logger.getLogger(WarmupHelper.class);
+
+	public static final String STATE_DISABLED = "disabled";
+	public static final String STATE_PENDING = "pending";
+	public static final String STATE_RUNNING = "running";
+	public static final String STATE_DONE = "done";
+
+	private static WarmupHelper instance;
+
+	private boolean enabled;
+	private int threads;
+	private String authorization;
+	private ProfileCacheHelper profiles;
+	private RulesRepositoryHelper repository;
+
+	private volatile String state;
+	private volatile int total;
+	private AtomicInteger loaded = new AtomicInteger();
+	private AtomicInteger failed = new AtomicInteger();
+	private volatile long duration;
+
+	public WarmupHelper(@Value("${rules.warmup.enabled}") boolean enabled, @Value("${rules.warmup.threads}") int threads, @Value("${rules.warmup.authorization}") String authorization, ProfileCacheHelper profiles, RulesRepositoryHelper repository) {
+		logger.debug("Creating warm-up helper...");
+		this.enabled = enabled && profiles.isEnabled();
+		this.threads = Math.max(1, threads);
+		this.authorization = authorization;
+		this.profiles = profiles;
+		this.repository = repository;
+		this.state = this.enabled ? STATE_PENDING : STATE_DISABLED;
+		if (enabled && !profiles.isEnabled())
+			logger.warn("The profile cache is disabled, there is nothing to warm up");
+		instance = this;
+	}
+
+	public static WarmupHelper getInstance() {
+		return instance;
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	// Ready when the warm-up is disabled or finished, even if some profiles failed to compile
+	public boolean isReady() {
+		return STATE_DISABLED.equals(state) || STATE_DONE.equals(state);
+	}
+
+	public JSONObject getStatus() {
+		JSONObject json = new JSONObject();
+		json.put("state", state);
+		json.put("profiles", total);
+		json.put("loaded", loaded.get());
+		json.put("failed", failed.get());
+		json.put("duration", duration);
+		return json;
+	}
+
+	public void warmup() {
+		if (!enabled)
+			return;
+
+		state = STATE_RUNNING;
+		long start = System.nanoTime();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			// The rules come with the list, so that each profile isn't fetched again
+			Map<String, JSONObject> latest = repository.findLatest(authorization);
+			total = latest.size();
+			logger.info(String.format("Warming up %d profile(s) with %d thread(s)...", total, threads));
+			if (total > profiles.getMaximumSize())
+				logger.warn(String.format("There are more profiles than the cache can hold (%d), some of them will be evicted", profiles.getMaximumSize()));
+
+			// Progress is logged every 10%
+			int step = Math.max(1, total / 10);
+			AtomicInteger completed = new AtomicInteger();
+			List<Callable<Void>> tasks = new ArrayList<>(total);
+			for (Map.Entry<String, JSONObject> entry : latest.entrySet())
+				tasks.add(() -> {
+					try {
+						profiles.preload(entry.getKey(), entry.getValue());
+						loaded.incrementAndGet();
+					} catch (ServiceException | RuntimeException e) {
+						failed.incrementAndGet();
+						logger.warn(String.format("Can't warm up the profile %s: %s", entry.getKey(), e.getMessage()));
+					}
+					int done = completed.incrementAndGet();
+					if (done % step == 0)
+						logger.info(String.format("Warm-up progress: %d/%d profile(s)", done, total));
+					return null;
+				});
+
+			for (Future<Void> future : executor.invokeAll(tasks))
+				future.get();
+		} catch (ServiceException | ExecutionException e) {
+			logger.error("The warm-up failed, profiles will be loaded on demand", e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			executor.shutdownNow();
+			duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+			state = STATE_DONE;
+			logger.info(String.format("Warm-up done in %d ms: %d profile(s) loaded, %d failed", duration, loaded.get(), failed.get()));
+		}
+	}
+
+}
@@ -0,0 +1,351 @@
+package gov.cdc.foundation.repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+import org.apache.log4j.Logger;
+import org.json.JSONObject;
+
+import gov.cdc.foundation.helper.RulesRepositoryHelper;
+import gov.cdc.helper.common.ServiceException;
+
+// Rules stored on the local disk, reads never leave the process.
+// rules.log is an append-only log of (profile, rules) records, the last record of a profile wins. It is memory-mapped for reads,
+// in segments so that the log can grow past 2GB and an append only maps the last segment again.
+// The log is compacted once most of it is made of overwritten records: the live records are copied to a new log that replaces it.
+// rules.idx is a snapshot of the profile offsets in the log, so that only the records written after it are replayed at startup.
+public class LocalRulesRepository implements RulesRepository, Closeable {
+
+	private static final Logger logger = Logger.getLogger(LocalRulesRepository.class);
+
+	public static final String LOG_FILE = "rules.log";
+	public static final String INDEX_FILE = "rules.idx";
+
+	private static final String ID = "_id";
+
+	// Key length, value length and CRC32 of the key and the value
+	private static final int RECORD_HEADER = 12;
+	private static final int INDEX_MAGIC = 0x52554C31;
+
+	private static final int SEGMENT_SIZE = 1 << 30;
+	// Overwritten bytes tolerated in the log before it is compacted, on top of the live ones
+	private static final long COMPACTION_THRESHOLD = 64L * 1024 * 1024;
+
+	private final Path directory;
+	private final int segmentSize;
+	private final long compactionThreshold;
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+	// Held by readers, so that a compaction never swaps the log while a value is copied from it
+	private final ReadWriteLock compaction = new ReentrantReadWriteLock();
+	private FileChannel log;
+	private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+	private long size;
+	// Bytes of the records that aren't overwritten
+	private long live;
+	private int appended;
+
+	public LocalRulesRepository(Path directory) throws IOException {
+		this(directory, SEGMENT_SIZE, COMPACTION_THRESHOLD);
+	}
+
+	LocalRulesRepository(Path directory, int segmentSize, long compactionThreshold) throws IOException {
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.compactionThreshold = compactionThreshold;
+		Files.createDirectories(directory);
+		this.log = FileChannel.open(directory.resolve(LOG_FILE), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+		long start = readIndex();
+		replay(start);
+		remap(0);
+		for (Map.Entry<String, Entry> entry : entries.entrySet())
+			live += recordLength(entry.getKey().getBytes(StandardCharsets.UTF_8), entry.getValue().length);
+		if (size > start)
+			writeIndex();
+		logger.info(String.format("%d profile(s) loaded from %s", entries.size(), directory));
+	}
+
+	@Override
+	public JSONObject get(String authorizationHeader, String profile) {
+		byte[] value;
+		compaction.readLock().lock();
+		try {
+			Entry entry = entries.get(profile);
+			if (entry == null)
+				return null;
+			value = read(entry);
+		} finally {
+			compaction.readLock().unlock();
+		}
+		// Same as the object microservice, the profile is the object identifier
+		JSONObject rules = new JSONObject(new String(value, StandardCharsets.UTF_8));
+		rules.put(ID, profile);
+		return rules;
+	}
+
+	@Override
+	public synchronized void save(String authorizationHeader, String profile, JSONObject rules) throws ServiceException {
+		byte[] key = profile.getBytes(StandardCharsets.UTF_8);
+		JSONObject copy = new JSONObject(rules.toString());
+		copy.remove(ID);
+		byte[] value = copy.toString().getBytes(StandardCharsets.UTF_8);
+
+		try {
+			long previous = size;
+			size = append(log, size, key, value);
+			log.force(false);
+
+			// Readers must see the new mapping before the entry that points into it
+			remap(previous);
+			Entry replaced = entries.put(profile, new Entry(size - value.length, value.length));
+			live += recordLength(key, value.length);
+			if (replaced != null)
+				live -= recordLength(key, replaced.length);
+			appended++;
+
+			if (size - live > Math.max(live, compactionThreshold))
+				compact();
+		} catch (IOException e) {
+			throw new ServiceException(e);
+		}
+	}
+
+	@Override
+	public synchronized boolean create(String authorizationHeader, String key, JSONObject rules) throws ServiceException {
+		if (entries.containsKey(key))
+			return false;
+		save(authorizationHeader, key, rules);
+		return true;
+	}
+
+	// Copies the live records to a new log that replaces the current one
+	public synchronized void compact() throws IOException {
+		long before = size;
+		Path tmp = directory.resolve(LOG_FILE + ".tmp");
+		FileChannel compacted = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		compaction.writeLock().lock();
+		try {
+			Map<String, Entry> moved = new HashMap<>();
+			long position = 0;
+			for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+				byte[] value = read(entry.getValue());
+				position = append(compacted, position, entry.getKey().getBytes(StandardCharsets.UTF_8), value);
+				moved.put(entry.getKey(), new Entry(position - value.length, value.length));
+			}
+			compacted.force(true);
+
+			// Without its index, a crash before the new index is written replays the log, whichever one it is
+			Files.deleteIfExists(directory.resolve(INDEX_FILE));
+			Files.move(tmp, directory.resolve(LOG_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			log.close();
+			log = compacted;
+			size = position;
+			live = position;
+			entries.putAll(moved);
+			segments = new MappedByteBuffer[0];
+			remap(0);
+			writeIndex();
+		} catch (IOException | RuntimeException e) {
+			if (log != compacted) {
+				compacted.close();
+				Files.deleteIfExists(tmp);
+			}
+			throw e;
+		} finally {
+			compaction.writeLock().unlock();
+		}
+		logger.info(String.format("%s compacted from %d to %d byte(s)", LOG_FILE, before, size));
+	}
+
+	@Override
+	public Map<String, JSONObject> findLatest(String authorizationHeader) {
+		Map<String, JSONObject> profiles = new HashMap<>();
+		for (String profile : entries.keySet())
+			if (!RulesRepositoryHelper.isVersionKey(profile)) {
+				JSONObject rules = get(authorizationHeader, profile);
+				if (rules != null)
+					profiles.put(profile, rules);
+			}
+		return profiles;
+	}
+
+	public boolean exists(String profile) {
+		return entries.containsKey(profile);
+	}
+
+	public Set<String> getProfiles() {
+		return Collections.unmodifiableSet(entries.keySet());
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (appended > 0)
+			writeIndex();
+		log.close();
+	}
+
+	private long readIndex() throws IOException {
+		Path index = directory.resolve(INDEX_FILE);
+		if (!Files.exists(index))
+			return 0;
+
+		try (FileChannel channel = FileChannel.open(index, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.remaining() < 16 || buffer.getInt() != INDEX_MAGIC)
+				return 0;
+			long covered = buffer.getLong();
+			int count = buffer.getInt();
+
+			// The snapshot is useless if the log it describes was truncated
+			if (covered > log.size())
+				return 0;
+			for (int i = 0; i < count; i++) {
+				byte[] key = new byte[buffer.getShort() & 0xFFFF];
+				buffer.get(key);
+				entries.put(new String(key, StandardCharsets.UTF_8), new Entry(buffer.getLong(), buffer.getInt()));
+			}
+			return covered;
+		} catch (RuntimeException e) {
+			logger.warn("The rules index is corrupted, replaying the whole log", e);
+			entries.clear();
+			return 0;
+		}
+	}
+
+	private void replay(long start) throws IOException {
+		long position = start;
+		long end = log.size();
+		ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+		while (position + RECORD_HEADER <= end) {
+			header.clear();
+			log.read(header, position);
+			header.flip();
+			int keyLength = header.getInt();
+			int valueLength = header.getInt();
+			int crc = header.getInt();
+			if (keyLength < 0 || valueLength < 0 || position + RECORD_HEADER + keyLength + valueLength > end)
+				break;
+
+			ByteBuffer body = ByteBuffer.allocate(keyLength + valueLength);
+			log.read(body, position + RECORD_HEADER);
+			byte[] key = new byte[keyLength];
+			byte[] value = new byte[valueLength];
+			body.flip();
+			body.get(key).get(value);
+			if (checksum(key, value) != crc)
+				break;
+
+			position += RECORD_HEADER + keyLength + valueLength;
+			entries.put(new String(key, StandardCharsets.UTF_8), new Entry(position - valueLength, valueLength));
+		}
+
+		// Drop the partially written record of a crash, if any
+		if (position < end) {
+			logger.warn(String.format("Truncating %d byte(s) at the end of %s", end - position, LOG_FILE));
+			log.truncate(position);
+		}
+		size = position;
+	}
+
+	private static long append(FileChannel channel, long position, byte[] key, byte[] value) throws IOException {
+		ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + key.length + value.length);
+		record.putInt(key.length).putInt(value.length).putInt(checksum(key, value)).put(key).put(value);
+		record.flip();
+		while (record.hasRemaining())
+			position += channel.write(record, position);
+		return position;
+	}
+
+	// A value may span two segments
+	private byte[] read(Entry entry) {
+		MappedByteBuffer[] mapped = segments;
+		byte[] value = new byte[entry.length];
+		int copied = 0;
+		while (copied < value.length) {
+			long position = entry.offset + copied;
+			ByteBuffer segment = mapped[(int) (position / segmentSize)].duplicate();
+			segment.position((int) (position % segmentSize));
+			int length = Math.min(value.length - copied, segment.remaining());
+			segment.get(value, copied, length);
+			copied += length;
+		}
+		return value;
+	}
+
+	// Maps the segments from the one holding the given offset to the end of the log, the previous ones are full and kept as they are
+	private void remap(long from) throws IOException {
+		int first = (int) (from / segmentSize);
+		int count = (int) ((size + segmentSize - 1) / segmentSize);
+		MappedByteBuffer[] mapped = new MappedByteBuffer[count];
+		System.arraycopy(segments, 0, mapped, 0, Math.min(first, segments.length));
+		for (int i = first; i < count; i++) {
+			long start = (long) i * segmentSize;
+			mapped[i] = log.map(FileChannel.MapMode.READ_ONLY, start, Math.min(segmentSize, size - start));
+		}
+		segments = mapped;
+	}
+
+	private void writeIndex() throws IOException {
+		int length = 16;
+		for (String key : entries.keySet())
+			length += 14 + key.getBytes(StandardCharsets.UTF_8).length;
+
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		buffer.putInt(INDEX_MAGIC).putLong(size).putInt(entries.size());
+		for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+			byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+			buffer.putShort((short) key.length).put(key).putLong(entry.getValue().offset).putInt(entry.getValue().length);
+		}
+		buffer.flip();
+
+		// Written aside and renamed, so that a crash never leaves a partial snapshot
+		Path tmp = directory.resolve(INDEX_FILE + ".tmp");
+		try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+			channel.force(true);
+		}
+		Files.move(tmp, directory.resolve(INDEX_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		appended = 0;
+	}
+
+	private static long recordLength(byte[] key, int valueLength) {
+		return RECORD_HEADER + key.length + valueLength;
+	}
+
+	private static int checksum(byte[] key, byte[] value) {
+		CRC32 crc = new CRC32();
+		crc.update(key);
+		crc.update(value);
+		return (int) crc.getValue();
+	}
+
+	private static class Entry {
+
+		private final long offset;
+		private final int length;
+
+		public Entry(long offset, int length) {
+			this.offset = offset;
+			this.length = length;
+		}
+
+	}
+
+}
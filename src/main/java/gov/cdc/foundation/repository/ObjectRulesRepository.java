@@ -0,0 +1,140 @@
+package gov.cdc.foundation.repository;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+
+import gov.cdc.foundation.helper.MessageHelper;
+import gov.cdc.foundation.helper.ObjectClientHelper;
+import gov.cdc.foundation.helper.RulesRepositoryHelper;
+import gov.cdc.helper.ObjectHelper;
+import gov.cdc.helper.common.ServiceException;
+
+// Rules stored in the object microservice, every call is a remote one and waits for a pooled connection
+public class ObjectRulesRepository implements RulesRepository {
+
+	private static final Logger logger = Logger.getLogger(ObjectRulesRepository.class);
+
+	@Override
+	public JSONObject get(String authorizationHeader, String profile) throws ServiceException {
+		return ObjectClientHelper.call(() -> {
+			ObjectHelper helper = ObjectHelper.getInstance(authorizationHeader);
+			try {
+				return helper.getObject(profile);
+			} catch (ResourceAccessException e) {
+				throw new ServiceException(e);
+			} catch (Exception e) {
+				// Only a missing object means that there are no rules, any other error fails the load
+				if (!isNotFound(e, helper, profile))
+					throw e instanceof ServiceException ? (ServiceException) e : new ServiceException(e);
+				logger.debug(e);
+				return null;
+			}
+		});
+	}
+
+	// The object service answers with a 404 when the object doesn't exist, otherwise it is asked whether it exists
+	private static boolean isNotFound(Exception error, ObjectHelper helper, String profile) {
+		for (Throwable cause = error; cause != null; cause = cause.getCause())
+			if (cause instanceof HttpStatusCodeException)
+				return ((HttpStatusCodeException) cause).getStatusCode() == HttpStatus.NOT_FOUND;
+		try {
+			return !helper.exists(profile);
+		} catch (Exception e) {
+			logger.debug(e);
+			return false;
+		}
+	}
+
+	// A single query returns the rules of every profile, the versions are left out by the query
+	@Override
+	public Map<String, JSONObject> findLatest(String authorizationHeader) throws ServiceException {
+		JSONObject query = new JSONObject().put(RulesRepositoryHelper.FIELD_ID, new JSONObject().put("$regex", "^(?!.*" + RulesRepositoryHelper.VERSION_SEPARATOR + ")"));
+		JSONObject result = ObjectClientHelper.call(() -> {
+			try {
+				return ObjectHelper.getInstance(authorizationHeader).find(query);
+			} catch (ServiceException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new ServiceException(e);
+			}
+		});
+
+		JSONArray items = result.optJSONArray("items");
+		Map<String, JSONObject> profiles = new HashMap<>();
+		if (items != null)
+			for (int i = 0; i < items.length(); i++) {
+				JSONObject item = items.optJSONObject(i);
+				String id = item != null ? item.optString(RulesRepositoryHelper.FIELD_ID, null) : null;
+				if (id != null && !RulesRepositoryHelper.isVersionKey(id))
+					profiles.put(id, item);
+			}
+		return profiles;
+	}
+
+	@Override
+	public void save(String authorizationHeader, String profile, JSONObject rules) throws ServiceException {
+		// Versions are immutable, they are only ever created
+		if (RulesRepositoryHelper.isVersionKey(profile)) {
+			if (!create(authorizationHeader, profile, rules))
+				throw new ServiceException(String.format(MessageHelper.ERROR_VERSION_IMMUTABLE, profile));
+			return;
+		}
+
+		ObjectClientHelper.call(() -> {
+			try {
+				ObjectHelper helper = ObjectHelper.getInstance(authorizationHeader);
+				if (helper.exists(profile))
+					helper.updateObject(profile, rules);
+				else
+					helper.createObject(rules, profile);
+				return null;
+			} catch (ServiceException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new ServiceException(e);
+			}
+		});
+	}
+
+	// The object service rejects the creation of an object whose identifier is taken, so concurrent instances can't both create the same key.
+	// The first check only saves that call in the common case of an existing key.
+	@Override
+	public boolean create(String authorizationHeader, String key, JSONObject rules) throws ServiceException {
+		return ObjectClientHelper.call(() -> {
+			ObjectHelper helper = ObjectHelper.getInstance(authorizationHeader);
+			try {
+				if (helper.exists(key))
+					return false;
+				helper.createObject(rules, key);
+				return true;
+			} catch (Exception e) {
+				if (isTaken(e, helper, key)) {
+					logger.debug(e);
+					return false;
+				}
+				throw e instanceof ServiceException ? (ServiceException) e : new ServiceException(e);
+			}
+		});
+	}
+
+	// A conflict, or any other failure once the key exists, means that another instance created it first
+	private static boolean isTaken(Exception error, ObjectHelper helper, String key) {
+		for (Throwable cause = error; cause != null; cause = cause.getCause())
+			if (cause instanceof HttpStatusCodeException && ((HttpStatusCodeException) cause).getStatusCode() == HttpStatus.CONFLICT)
+				return true;
+		try {
+			return helper.exists(key);
+		} catch (Exception e) {
+			logger.debug(e);
+			return false;
+		}
+	}
+
+}
@@ -0,0 +1,22 @@
+package gov.cdc.foundation.repository;
+
+import java.util.Map;
+
+import org.json.JSONObject;
+
+import gov.cdc.helper.common.ServiceException;
+
+public interface RulesRepository {
+
+	// Returns null when the profile doesn't exist
+	JSONObject get(String authorizationHeader, String profile) throws ServiceException;
+
+	// Latest rules of every profile by identifier, without the versions
+	Map<String, JSONObject> findLatest(String authorizationHeader) throws ServiceException;
+
+	void save(String authorizationHeader, String profile, JSONObject rules) throws ServiceException;
+
+	// Only writes the rules when nothing is stored under the key yet, returns false otherwise
+	boolean create(String authorizationHeader, String key, JSONObject rules) throws ServiceException;
+
+}
@@ -1,18 +1,58 @@
 package gov.cdc.foundation.security;
 
+import java.util.Collections;
+
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.OAuth2Request;
 import org.springframework.stereotype.Component;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
 @Component("authz")
 @Configuration
 public class Authz {
 
+	public static final String PERMISSION_CREATE = "create";
+	public static final String PERMISSION_READ = "read";
+	public static final String PERMISSION_UPDATE = "update";
+
+	private static final ScopeIndex EMPTY = new ScopeIndex(Collections.<String>emptySet());
+
 	@Value("${security.oauth2.protected}")
 	private String protectedURIs;
 
+	// The token services return the same request for a token until it expires from their cache,
+	// so the scopes of a token are only parsed once. Keys are compared by identity and weakly referenced.
+	private final Cache<OAuth2Request, ScopeIndex> scopes;
+
+	public Authz(@Value("${security.oauth2.cache.size}") long size) {
+		this.scopes = Caffeine.newBuilder()
+				.maximumSize(size)
+				.weakKeys()
+				.build();
+	}
+
 	public boolean isSecured() {
 		return protectedURIs != null && protectedURIs.length() > 0;
 	}
 
+	public boolean canRead(Authentication authentication, String profile) {
+		return !isSecured() || getScopes(authentication).isGranted(profile, PERMISSION_READ);
+	}
+
+	public boolean canWrite(Authentication authentication, String profile) {
+		return !isSecured() || getScopes(authentication).isGranted(profile, PERMISSION_CREATE, PERMISSION_UPDATE);
+	}
+
+	public ScopeIndex getScopes(Authentication authentication) {
+		if (!(authentication instanceof OAuth2Authentication))
+			return EMPTY;
+		OAuth2Request request = ((OAuth2Authentication) authentication).getOAuth2Request();
+		return scopes.get(request, key -> new ScopeIndex(key.getScope()));
+	}
+
 }
@@ -0,0 +1,154 @@
+package gov.cdc.foundation.security;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.common.exceptions.InvalidTokenException;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.OAuth2Request;
+import org.springframework.security.oauth2.provider.token.DefaultAccessTokenConverter;
+import org.springframework.security.oauth2.provider.token.ResourceServerTokenServices;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+// Keeps the introspection result of each token until the token expires, or for maxTtl at most.
+// Tokens are only kept as SHA-256 hashes and concurrent lookups of the same token share a single introspection call.
+public class CachingTokenServices implements ResourceServerTokenServices {
+
+	public static final String EXTENSION_EXP = "exp";
+
+	private static final String CACHE_NAME = "tokens";
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	private final ResourceServerTokenServices delegate;
+	private final Cache<String, CachedAuthentication> cache;
+
+	public CachingTokenServices(ResourceServerTokenServices delegate, long size, long maxTtl, MeterRegistry registry) {
+		this(delegate, size, maxTtl, registry, Ticker.systemTicker());
+	}
+
+	CachingTokenServices(ResourceServerTokenServices delegate, long size, long maxTtl, MeterRegistry registry, Ticker ticker) {
+		this.delegate = delegate;
+		this.cache = Caffeine.newBuilder()
+				.maximumSize(size)
+				.expireAfter(new TokenExpiry(TimeUnit.SECONDS.toNanos(maxTtl)))
+				.ticker(ticker)
+				.recordStats()
+				.build();
+		if (registry != null)
+			CaffeineCacheMetrics.monitor(registry, cache, CACHE_NAME);
+	}
+
+	@Override
+	public OAuth2Authentication loadAuthentication(String accessToken) throws AuthenticationException, InvalidTokenException {
+		// Rejected tokens throw, so they are never cached
+		CachedAuthentication cached = cache.get(hash(accessToken), key -> new CachedAuthentication(delegate.loadAuthentication(accessToken)));
+
+		// The security filter sets the request details on the authentication, each request needs its own copy
+		OAuth2Authentication authentication = new OAuth2Authentication(cached.authentication.getOAuth2Request(), cached.authentication.getUserAuthentication());
+		authentication.setDetails(cached.authentication.getDetails());
+		return authentication;
+	}
+
+	@Override
+	public OAuth2AccessToken readAccessToken(String accessToken) {
+		return delegate.readAccessToken(accessToken);
+	}
+
+	public void invalidateAll() {
+		cache.invalidateAll();
+	}
+
+	private static String hash(String accessToken) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(accessToken.getBytes(StandardCharsets.UTF_8));
+			char[] hex = new char[digest.length * 2];
+			for (int i = 0; i < digest.length; i++) {
+				hex[2 * i] = HEX_DIGITS[(digest[i] >> 4) & 0xF];
+				hex[2 * i + 1] = HEX_DIGITS[digest[i] & 0xF];
+			}
+			return new String(hex);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static class CachedAuthentication {
+
+		private final OAuth2Authentication authentication;
+		private final long remaining;
+
+		public CachedAuthentication(OAuth2Authentication authentication) {
+			this.authentication = authentication;
+			this.remaining = getRemaining(authentication);
+		}
+
+		// Nanoseconds before the token expires, Long.MAX_VALUE when the provider didn't tell
+		private static long getRemaining(OAuth2Authentication authentication) {
+			Serializable exp = authentication.getOAuth2Request().getExtensions().get(EXTENSION_EXP);
+			if (!(exp instanceof Number))
+				return Long.MAX_VALUE;
+			long millis = TimeUnit.SECONDS.toMillis(((Number) exp).longValue()) - System.currentTimeMillis();
+			return Math.max(0, TimeUnit.MILLISECONDS.toNanos(millis));
+		}
+
+	}
+
+	private static class TokenExpiry implements Expiry<String, CachedAuthentication> {
+
+		private final long maxTtl;
+
+		public TokenExpiry(long maxTtl) {
+			this.maxTtl = maxTtl;
+		}
+
+		@Override
+		public long expireAfterCreate(String key, CachedAuthentication value, long currentTime) {
+			return Math.min(maxTtl, value.remaining);
+		}
+
+		@Override
+		public long expireAfterUpdate(String key, CachedAuthentication value, long currentTime, long currentDuration) {
+			return currentDuration;
+		}
+
+		@Override
+		public long expireAfterRead(String key, CachedAuthentication value, long currentTime, long currentDuration) {
+			return currentDuration;
+		}
+
+	}
+
+	// Keeps the exp claim of the introspection response, the default converter drops it
+	public static class ExpiryAccessTokenConverter extends DefaultAccessTokenConverter {
+
+		@Override
+		public OAuth2Authentication extractAuthentication(Map<String, ?> map) {
+			OAuth2Authentication authentication = super.extractAuthentication(map);
+			Object exp = map.get(EXTENSION_EXP);
+			if (!(exp instanceof Number))
+				return authentication;
+
+			OAuth2Request request = authentication.getOAuth2Request();
+			Map<String, Serializable> extensions = new HashMap<>(request.getExtensions());
+			extensions.put(EXTENSION_EXP, ((Number) exp).longValue());
+			OAuth2Request withExpiry = new OAuth2Request(request.getRequestParameters(), request.getClientId(), request.getAuthorities(), request.isApproved(), request.getScope(), request.getResourceIds(), request.getRedirectUri(), request.getResponseTypes(), extensions);
+			return new OAuth2Authentication(withExpiry, authentication.getUserAuthentication());
+		}
+
+	}
+
+}
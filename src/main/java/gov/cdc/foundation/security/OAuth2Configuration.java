@@ -12,6 +12,7 @@ import org.springframework.security.oauth2.provider.token.RemoteTokenServices;
 import org.springframework.security.oauth2.provider.token.ResourceServerTokenServices;
 
 import gov.cdc.security.SSLCertificateValidation;
+import io.micrometer.core.instrument.MeterRegistry;
 
 @Configuration
 @EnableGlobalMethodSecurity(prePostEnabled = true)
@@ -25,6 +26,12 @@ public class OAuth2Configuration extends ResourceServerConfigurerAdapter {
 	private String clientId;
 	@Value("${security.oauth2.client.client-secret}")
 	private String clientSecret;
+	@Value("${security.oauth2.cache.enabled}")
+	private boolean cacheEnabled;
+	@Value("${security.oauth2.cache.size}")
+	private long cacheSize;
+	@Value("${security.oauth2.cache.ttl}")
+	private long cacheTtl;
 	@Value("${ssl.verifying.disable}")
 	private boolean disableSSL;
 	
@@ -46,12 +53,16 @@ public class OAuth2Configuration extends ResourceServerConfigurerAdapter {
 	}
 
 	@Bean
-	public ResourceServerTokenServices userInfoTokenServices() {
+	public ResourceServerTokenServices userInfoTokenServices(MeterRegistry registry) {
 		RemoteTokenServices tokenServices = new RemoteTokenServices();
 		tokenServices.setCheckTokenEndpointUrl(userInfoUri);
 		tokenServices.setClientId(clientId);
 		tokenServices.setClientSecret(clientSecret);
-		return tokenServices;
+		if (!cacheEnabled)
+			return tokenServices;
+
+		tokenServices.setAccessTokenConverter(new CachingTokenServices.ExpiryAccessTokenConverter());
+		return new CachingTokenServices(tokenServices, cacheSize, cacheTtl, registry);
 	}
 
 	@Override
@@ -0,0 +1,50 @@
+package gov.cdc.foundation.security;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+// Permissions granted by a set of scopes, indexed by profile.
+// The scopes look like fdns.rules.{profile}.{permission} where both the profile and the permission can be *.
+public class ScopeIndex {
+
+	public static final String PREFIX = "fdns.rules.";
+	public static final String WILDCARD = "*";
+
+	private final Map<String, Set<String>> permissions = new HashMap<>();
+
+	public ScopeIndex(Collection<String> scopes) {
+		for (String scope : scopes) {
+			if (scope == null || !scope.startsWith(PREFIX))
+				continue;
+			// Profiles may contain dots, the permission is always the last part
+			int separator = scope.lastIndexOf('.');
+			if (separator <= PREFIX.length())
+				continue;
+			String profile = scope.substring(PREFIX.length(), separator);
+			String permission = scope.substring(separator + 1);
+			permissions.computeIfAbsent(profile, key -> new HashSet<>()).add(permission);
+		}
+	}
+
+	public boolean isGranted(String profile, String... requested) {
+		Set<String> profilePermissions = profile == null ? null : permissions.get(profile);
+		Set<String> anyProfilePermissions = permissions.get(WILDCARD);
+		for (String permission : requested)
+			if (contains(profilePermissions, permission) || contains(anyProfilePermissions, permission))
+				return true;
+		return false;
+	}
+
+	public Set<String> getProfiles() {
+		return Collections.unmodifiableSet(permissions.keySet());
+	}
+
+	private static boolean contains(Set<String> granted, String permission) {
+		return granted != null && (granted.contains(permission) || granted.contains(WILDCARD));
+	}
+
+}
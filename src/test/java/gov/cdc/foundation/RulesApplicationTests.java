@@ -8,9 +8,12 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
 
 import org.apache.commons.io.IOUtils;
 import org.hamcrest.CoreMatchers;
+import org.json.JSONArray;
 import org.json.JSONObject;
 import org.junit.Before;
 import org.junit.Test;
@@ -22,6 +25,7 @@ import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
 import org.springframework.boot.test.json.JacksonTester;
 import org.springframework.boot.test.json.JsonContent;
 import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.server.LocalServerPort;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
@@ -30,6 +34,7 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMultipartHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
@@ -37,6 +42,16 @@ import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import gov.cdc.engine.ValidatorException;
+import gov.cdc.foundation.engine.CompiledProfile;
+import gov.cdc.foundation.engine.ValidatorPool;
+import gov.cdc.foundation.helper.ChangeNotificationHelper;
+import gov.cdc.foundation.helper.MetricsHelper;
+import gov.cdc.foundation.helper.ProfileCacheHelper;
+import gov.cdc.foundation.helper.RulesRepositoryHelper;
+import gov.cdc.helper.common.ServiceException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
 @RunWith(SpringRunner.class)
 @SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = { 
 		"logging.fluentd.host=fluentd", 
@@ -54,6 +69,16 @@ public class RulesApplicationTests {
 	private TestRestTemplate restTemplate;
 	@Autowired
 	private MockMvc mvc;
+	@Autowired
+	private ProfileCacheHelper profiles;
+	@Autowired
+	private ChangeNotificationHelper notifications;
+	@Autowired
+	private RulesRepositoryHelper repository;
+	@Autowired
+	private MetricsHelper metrics;
+	@LocalServerPort
+	private int port;
 	private JacksonTester<JsonNode> json;
 	private String baseUrlPath = "/api/1.0/";
 	private String profile;
@@ -112,6 +137,85 @@ public class RulesApplicationTests {
 		assertThat(body).hasJsonPathValue("@.details");
 	}
 
+	@Test
+	public void validateUsingCachedProfile() throws Exception {
+		// First create and update rules
+		createAndUpdateRules();
+
+		// Validate the same profile twice, the second call must be served from the cache
+		for (int i = 0; i < 2; i++) {
+			ResponseEntity<JsonNode> response = restTemplate.exchange(
+					baseUrlPath + "validate/{profile}",
+					HttpMethod.POST,
+					getEntity(getResourceAsString("junit/object.json"), MediaType.APPLICATION_JSON),
+					JsonNode.class,
+					profile);
+			assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		}
+
+		ResponseEntity<JsonNode> response = restTemplate.getForEntity(baseUrlPath + "cache", JsonNode.class);
+		JsonContent<JsonNode> body = this.json.write(response.getBody());
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(body).extractingJsonPathNumberValue("@.hits").isNotEqualTo(0);
+		assertThat(body).hasJsonPathValue("@.misses");
+		assertThat(body).hasJsonPathValue("@.evictions");
+	}
+
+	@Test
+	public void metrics() throws Exception {
+		// Validate a message to record some metrics, the rules cached by the upsert are fetched again
+		createAndUpdateRules();
+		profiles.invalidate(profile);
+		ResponseEntity<JsonNode> validation = restTemplate.exchange(
+				baseUrlPath + "validate/{profile}",
+				HttpMethod.POST,
+				getEntity(getResourceAsString("junit/object.json"), MediaType.APPLICATION_JSON),
+				JsonNode.class,
+				profile);
+		assertThat(validation.getStatusCode()).isEqualTo(HttpStatus.OK);
+
+		ResponseEntity<String> response = this.restTemplate.getForEntity("/actuator/prometheus", String.class);
+		assertThat(response.getStatusCodeValue()).isEqualTo(200);
+		assertThat(response.getBody(), CoreMatchers.containsString("rules_profile_fetch_seconds_bucket"));
+		assertThat(response.getBody(), CoreMatchers.containsString("rules_validate_seconds_bucket"));
+		assertThat(response.getBody(), CoreMatchers.containsString("rules_messages_total"));
+		assertThat(response.getBody(), CoreMatchers.containsString("cache_gets_total"));
+	}
+
+	@Test
+	public void validateBatchUsingProfile() throws Exception {
+		// First create and update rules
+		createAndUpdateRules();
+		String object = new JSONObject(getResourceAsString("junit/object.json")).toString();
+
+		// Check a JSON array of messages
+		ResponseEntity<JsonNode> response = restTemplate.exchange(
+				baseUrlPath + "validate/{profile}/batch",
+				HttpMethod.POST,
+				getEntity("[" + object + "," + object + "]", MediaType.APPLICATION_JSON),
+				JsonNode.class,
+				profile);
+		JsonContent<JsonNode> body = this.json.write(response.getBody());
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(body).extractingJsonPathNumberValue("@.total").isEqualTo(2);
+		assertThat(body).extractingJsonPathBooleanValue("@.valid").isEqualTo(true);
+		assertThat(body).extractingJsonPathNumberValue("@.nbOfValid").isEqualTo(2);
+		assertThat(body).extractingJsonPathBooleanValue("@.results[1].valid").isEqualTo(true);
+
+		// Check NDJSON messages with explain mode
+		response = restTemplate.exchange(
+				baseUrlPath + "validate/{profile}/batch?explain=true",
+				HttpMethod.POST,
+				getEntity(object + "\n" + object + "\n" + object + "\n", MediaType.valueOf("application/x-ndjson")),
+				JsonNode.class,
+				profile);
+		body = this.json.write(response.getBody());
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(body).extractingJsonPathNumberValue("@.total").isEqualTo(3);
+		assertThat(body).extractingJsonPathNumberValue("@.nbOfInvalid").isEqualTo(0);
+		assertThat(body).hasJsonPathValue("@.results[2].details");
+	}
+
 	@Test
 	public void validateWithoutProfile() throws Exception {
 		MockMultipartFile json = new MockMultipartFile("json", "object.json", "application/json", getResourceAsString("junit/object.json").getBytes());
@@ -133,6 +237,41 @@ public class RulesApplicationTests {
 		assertThat(response.getJSONArray("details")).isNotNull();
 	}
 	
+	@Test
+	public void limitFilesReadInMemory() throws Exception {
+		// Larger than the 1MB read in memory by validate, validate/stream accepts it
+		JSONObject object = new JSONObject(getResourceAsString("junit/object.json"));
+		StringBuilder padding = new StringBuilder();
+		while (padding.length() <= 1024 * 1024)
+			padding.append("padding ");
+		object.put("padding", padding.toString());
+		MockMultipartFile json = new MockMultipartFile("json", "object.json", "application/json", object.toString().getBytes());
+		MockMultipartFile rules = new MockMultipartFile("rules", "rules.json", "application/json", getResourceAsString("junit/rules.json").getBytes());
+
+		mvc.perform(MockMvcRequestBuilders.fileUpload(baseUrlPath + "/validate").file(json).file(rules)).andExpect(status().isBadRequest());
+		String body = mvc.perform(MockMvcRequestBuilders.fileUpload(baseUrlPath + "/validate/stream").file(json).file(rules)).andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+		assertThat(new JSONObject(body.trim()).getBoolean("valid")).isTrue();
+	}
+
+	@Test
+	public void validateStreamWithoutProfile() throws Exception {
+		String object = new JSONObject(getResourceAsString("junit/object.json")).toString();
+		MockMultipartFile json = new MockMultipartFile("json", "objects.ndjson", "application/x-ndjson", (object + "\n" + object + "\n").getBytes());
+		MockMultipartFile rules = new MockMultipartFile("rules", "rules.json", "application/json", getResourceAsString("junit/rules.json").getBytes());
+
+		// Check a stream of messages, one result line per message
+		MockMultipartHttpServletRequestBuilder builder = MockMvcRequestBuilders.fileUpload(baseUrlPath + "/validate/stream");
+		String body = mvc.perform(builder.file(json).file(rules)).andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+		String[] lines = body.trim().split("\n");
+		assertThat(lines.length).isEqualTo(2);
+		for (int i = 0; i < lines.length; i++) {
+			JSONObject response = new JSONObject(lines[i]);
+			assertThat(response.getInt("index")).isEqualTo(i);
+			assertThat(response.getBoolean("valid")).isEqualTo(true);
+			assertThat(response.getInt("errors")).isEqualTo(0);
+		}
+	}
+
 	@Test
 	public void createAndUpdateRules() throws Exception {
 		int nbOfCalls = 2;
@@ -151,9 +290,95 @@ public class RulesApplicationTests {
 			assertThat(body).extractingJsonPathBooleanValue("@.success").isEqualTo(true);
 			assertThat(body).hasJsonPathValue("@.profile");
 			assertThat(body).extractingJsonPathStringValue("@.profile").isEqualTo(profile);
+			assertThat(body).hasJsonPathValue("@.version");
 		}
 	}
 	
+	@Test
+	public void watchProfileChanges() throws Exception {
+		// A replica with its own cache follows the changes of this instance, both share the rules store
+		ProfileCacheHelper replicaProfiles = new ProfileCacheHelper(true, 100, 300, 10, 1, 0, new String[] { "$all" }, false, 0, false, false, new MetricsHelper(new SimpleMeterRegistry()), repository);
+		int watchers = notifications.getWatchers();
+		ChangeNotificationHelper replica = new ChangeNotificationHelper(new String[] { "http://localhost:" + port + baseUrlPath }, "", 0, 15, replicaProfiles, repository);
+		// The constructors made the replica the instance the controller uses
+		ReflectionTestUtils.setField(ProfileCacheHelper.class, "instance", profiles);
+		ReflectionTestUtils.setField(ChangeNotificationHelper.class, "instance", notifications);
+		ReflectionTestUtils.setField(MetricsHelper.class, "instance", metrics);
+		try {
+			awaitTrue(() -> notifications.getWatchers() > watchers);
+
+			profile = UUID.randomUUID().toString();
+			int created = upsertRules();
+			awaitTrue(() -> servedVersion(replicaProfiles) == created);
+
+			// The replica compiles the new version as soon as it is notified, before the cached one expires
+			int updated = upsertRules();
+			assertThat(updated).isGreaterThan(created);
+			awaitTrue(() -> servedVersion(replicaProfiles) == updated);
+
+			// Reconnecting without missing a change keeps the cache
+			JSONObject ready = new JSONObject();
+			ready.put("origin", notifications.getOrigin());
+			ready.put("sequence", notifications.getSequence());
+			replica.onConnect(ready);
+			assertThat(replicaProfiles.getStats().getLong("size")).isEqualTo(1);
+
+			// A change was published while the replica was disconnected
+			ready.put("sequence", notifications.getSequence() + 1);
+			replica.onConnect(ready);
+			assertThat(replicaProfiles.getStats().getLong("size")).isEqualTo(0);
+			assertThat(servedVersion(replicaProfiles)).isEqualTo(updated);
+		} finally {
+			replica.shutdown();
+		}
+	}
+
+	@Test
+	public void rejectInvalidRules() throws Exception {
+		// The validator rejects the rules of the skills
+		ValidatorPool.Factory factory = profiles.getOptions().getValidatorFactory();
+		profiles.getOptions().setValidatorFactory(rules -> {
+			if (rules.toString().contains("$.contact.skills"))
+				throw new ValidatorException("Unknown path");
+			return factory.create(rules);
+		});
+		try {
+			profile = UUID.randomUUID().toString();
+			JSONObject rules = new JSONObject(getResourceAsString("junit/rules.json"));
+			rules.getJSONObject("$all").put("$.contact.skills", new JSONArray().put("Java"));
+			ResponseEntity<String> response = restTemplate.exchange(
+					baseUrlPath + "profile/{profile}",
+					HttpMethod.POST,
+					getEntity(rules.toString(), MediaType.APPLICATION_JSON),
+					String.class,
+					profile);
+			assertThat(response.getStatusCode()).isNotEqualTo(HttpStatus.OK);
+			assertThat(response.getBody()).contains("The rule $.contact.skills of $all is not valid: Unknown path");
+
+			// Nothing was stored nor cached
+			assertThat(repository.get(null, profile)).isNull();
+			assertThat(profiles.getCached(profile)).isNull();
+		} finally {
+			profiles.getOptions().setValidatorFactory(factory);
+		}
+	}
+
+	@Test
+	public void getStatisticsOfCachedProfilesOnly() throws Exception {
+		// Asking for the statistics of a profile that isn't compiled here doesn't load it
+		profile = UUID.randomUUID().toString();
+		long loads = profiles.getStats().getLong("loads") + profiles.getStats().getLong("loadFailures");
+		ResponseEntity<String> response = restTemplate.getForEntity(baseUrlPath + "stats/{profile}", String.class, profile);
+		assertThat(response.getStatusCode()).isNotEqualTo(HttpStatus.OK);
+		assertThat(profiles.getStats().getLong("loads") + profiles.getStats().getLong("loadFailures")).isEqualTo(loads);
+
+		// The upsert compiles the profile
+		upsertRules();
+		response = restTemplate.getForEntity(baseUrlPath + "stats/{profile}", String.class, profile);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(new JSONObject(response.getBody()).has("segments")).isTrue();
+	}
+
 	@Test
 	public void getProfile() throws Exception {
 		// Be sure that we create the profile
@@ -170,6 +395,34 @@ public class RulesApplicationTests {
 		assertThat(body).hasJsonPathValue("@._id");
 	}
 
+	private int upsertRules() throws IOException {
+		ResponseEntity<JsonNode> response = restTemplate.exchange(
+				baseUrlPath + "profile/{profile}", 
+				HttpMethod.POST, 
+				getEntity(getResourceAsString("junit/rules.json"), MediaType.APPLICATION_JSON),
+				JsonNode.class,
+				profile);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		return response.getBody().get("version").asInt();
+	}
+
+	private int servedVersion(ProfileCacheHelper profiles) {
+		try {
+			CompiledProfile rules = profiles.get(null, profile);
+			return rules == null ? -1 : rules.getVersion();
+		} catch (ServiceException e) {
+			return -1;
+		}
+	}
+
+	private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (!condition.getAsBoolean()) {
+			assertThat(System.nanoTime()).isLessThan(deadline);
+			Thread.sleep(20);
+		}
+	}
+
 	private InputStream getResource(String path) throws IOException {
 		return getClass().getClassLoader().getResourceAsStream(path);
 	}
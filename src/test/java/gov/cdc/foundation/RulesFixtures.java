@@ -0,0 +1,21 @@
+package gov.cdc.foundation;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+// Rules used by the unit tests, a single $all rule over the hobbies of the contact
+public class RulesFixtures {
+
+	private RulesFixtures() {
+		throw new IllegalAccessError("Helper class");
+	}
+
+	public static JSONObject hobbies(String hobby) {
+		return new JSONObject().put("$all", new JSONObject().put("$.contact.hobbies", new JSONArray().put(hobby)));
+	}
+
+	public static String hobby(JSONObject rules) {
+		return rules.getJSONObject("$all").getJSONArray("$.contact.hobbies").getString(0);
+	}
+
+}
@@ -0,0 +1,147 @@
+package gov.cdc.foundation.engine;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import gov.cdc.engine.SimpleValidator;
+import gov.cdc.engine.result.CompoundValidationResult;
+import gov.cdc.engine.result.ValidationResult;
+
+public class CompiledProfileTest {
+
+	private static final JSONObject PAYLOAD = new JSONObject("{\"contact\":{\"hobbies\":[\"Ski\"]}}");
+
+	@Test
+	public void reportsEveryErrorWithoutLimit() throws Exception {
+		AtomicInteger validations = new AtomicInteger();
+		CompiledProfile profile = new CompiledProfile("profile", rules(5), options(validations));
+
+		JSONObject response = profile.check(PAYLOAD, ExplainMode.NONE, 0);
+		assertThat(response.getBoolean("valid")).isFalse();
+		assertThat(response.getInt("errors")).isEqualTo(5);
+		assertThat(response.has("partial")).isFalse();
+		// The rules are validated as a whole
+		assertThat(validations.get()).isEqualTo(1);
+	}
+
+	@Test
+	public void stopsAtMaxErrors() throws Exception {
+		AtomicInteger validations = new AtomicInteger();
+		CompiledProfile profile = new CompiledProfile("profile", rules(5), options(validations));
+
+		JSONObject response = profile.check(PAYLOAD, ExplainMode.FULL, 2);
+		assertThat(response.getBoolean("valid")).isFalse();
+		assertThat(response.getInt("errors")).isEqualTo(2);
+		assertThat(response.getBoolean("partial")).isTrue();
+		// No explanation is built when the validation stops early
+		assertThat(response.has("details")).isFalse();
+		// One segment per rule, the last three are never validated
+		assertThat(validations.get()).isEqualTo(2);
+	}
+
+	@Test
+	public void stopsAtTheFirstErrorInFailFastMode() throws Exception {
+		AtomicInteger validations = new AtomicInteger();
+		CompiledProfile profile = new CompiledProfile("profile", rules(5), options(validations));
+
+		JSONObject response = profile.check(PAYLOAD, ExplainMode.NONE, 1);
+		assertThat(response.getInt("errors")).isEqualTo(1);
+		assertThat(response.getBoolean("partial")).isTrue();
+		assertThat(validations.get()).isEqualTo(1);
+	}
+
+	@Test
+	public void isCompleteWhenTheLimitIsNotReached() throws Exception {
+		AtomicInteger validations = new AtomicInteger();
+		CompiledProfile profile = new CompiledProfile("profile", rules(2), options(validations));
+
+		JSONObject response = profile.check(PAYLOAD, ExplainMode.NONE, 5);
+		assertThat(response.getInt("errors")).isEqualTo(2);
+		assertThat(response.has("partial")).isFalse();
+		assertThat(validations.get()).isEqualTo(2);
+	}
+
+	@Test
+	public void neverReportsMoreErrorsThanTheLimit() throws Exception {
+		AtomicInteger validations = new AtomicInteger();
+		ProfileOptions options = options(validations);
+		// No operator is split, so the only segment holds the five rules
+		options.setSegmentOperators(Collections.emptySet());
+		CompiledProfile profile = new CompiledProfile("profile", rules(5), options);
+
+		JSONObject response = profile.check(PAYLOAD, ExplainMode.NONE, 3);
+		assertThat(response.getInt("errors")).isEqualTo(3);
+		assertThat(response.getBoolean("partial")).isTrue();
+		assertThat(validations.get()).isEqualTo(1);
+
+		response = profile.check(PAYLOAD, ExplainMode.NONE, 5);
+		assertThat(response.getInt("errors")).isEqualTo(5);
+		assertThat(response.has("partial")).isFalse();
+	}
+
+	private static JSONObject rules(int numberOfRules) {
+		JSONObject paths = new JSONObject();
+		for (int i = 0; i < numberOfRules; i++)
+			paths.put("$.contact.skill" + i, new JSONArray().put("Java"));
+		return new JSONObject().put("$all", paths);
+	}
+
+	// Validators that reject every rule, as the payload has none of the skills
+	private static ProfileOptions options(AtomicInteger validations) {
+		ProfileOptions options = new ProfileOptions();
+		options.setValidatorFactory(rules -> new SimpleValidator() {
+			@Override
+			public ValidationResult validate(JSONObject payload) {
+				validations.incrementAndGet();
+				List<ValidationResult> results = new ArrayList<>();
+				for (String path : rules.getJSONObject("$all").keySet())
+					results.add(failure(path));
+				return new CompoundValidationResult() {
+					@Override
+					public List<ValidationResult> flatten() {
+						return results;
+					}
+				};
+			}
+		});
+		return options;
+	}
+
+	private static ValidationResult failure(String path) {
+		return new ValidationResult() {
+			@Override
+			public boolean isValid() {
+				return false;
+			}
+
+			@Override
+			public String getDescription() {
+				return path;
+			}
+
+			@Override
+			public String getComment() {
+				return null;
+			}
+
+			@Override
+			public String getCommand() {
+				return "$all";
+			}
+
+			@Override
+			public String getRule() {
+				return null;
+			}
+		};
+	}
+
+}
@@ -0,0 +1,148 @@
+package gov.cdc.foundation.engine;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class CompiledRulesTest {
+
+	private static final Object[] VALUES = { "Ski", "Travel", "Cinema", 1, 2, 1.5, true, false, JSONObject.NULL };
+
+	@Test
+	public void compilesAllRulesOnly() {
+		assertThat(CompiledRules.compile(rules("$.contact.hobbies", "Ski"))).isNotNull();
+		assertThat(CompiledRules.compile(new JSONObject())).isNull();
+		assertThat(CompiledRules.compile(new JSONObject().put("$any", new JSONObject().put("$.contact.hobbies", new JSONArray().put("Ski"))))).isNull();
+		assertThat(CompiledRules.compile(rules("$..hobbies", "Ski"))).isNull();
+		assertThat(CompiledRules.compile(rules("$.contact.hobbies"))).isNull();
+		assertThat(CompiledRules.compile(rules("$.contact.score", 0.6))).isNull();
+		assertThat(CompiledRules.compile(rules("$.contact", new JSONObject()))).isNull();
+	}
+
+	@Test
+	public void checksEveryValue() {
+		JSONObject payload = new JSONObject().put("contact", new JSONObject()
+				.put("name", "Ben")
+				.put("age", 33)
+				.put("hobbies", new JSONArray().put("Cinema").put("Travel").put("Ski")));
+
+		assertThat(CompiledRules.compile(rules("$.contact.hobbies", "Travel", "Ski")).test(payload)).isTrue();
+		assertThat(CompiledRules.compile(rules("$.contact.hobbies", "Travel", "Golf")).test(payload)).isFalse();
+		assertThat(CompiledRules.compile(rules("$.contact.hobbies[2]", "Ski")).test(payload)).isTrue();
+		assertThat(CompiledRules.compile(rules("$.contact.name", "Ben")).test(payload)).isTrue();
+		assertThat(CompiledRules.compile(rules("$.contact.age", 33L)).test(payload)).isTrue();
+		assertThat(CompiledRules.compile(rules("$.contact.age", "33")).test(payload)).isFalse();
+		assertThat(CompiledRules.compile(rules("$.contact.skills", "Java")).test(payload)).isFalse();
+	}
+
+	@Test
+	public void resolvesEachPathOnce() {
+		AtomicInteger reads = new AtomicInteger();
+		JSONObject contact = new JSONObject() {
+			@Override
+			public Object opt(String key) {
+				reads.incrementAndGet();
+				return super.opt(key);
+			}
+		};
+		contact.put("name", "Ben").put("hobbies", new JSONArray().put("Ski").put("Travel"));
+		JSONObject payload = new JSONObject().put("contact", contact);
+
+		JSONObject paths = new JSONObject()
+				.put("$.contact.name", new JSONArray().put("Ben"))
+				.put("$['contact']['name']", new JSONArray().put("Ben"))
+				.put("$.contact.hobbies", new JSONArray().put("Ski"))
+				.put("$.contact['hobbies']", new JSONArray().put("Travel"));
+		CompiledRules rules = CompiledRules.compile(new JSONObject().put("$all", paths));
+		assertThat(rules.getNumberOfPaths()).isEqualTo(2);
+		assertThat(rules.test(payload)).isTrue();
+		// $.contact is resolved once, then each of its keys once
+		assertThat(reads.get()).isEqualTo(2);
+
+		// Every rule of a path is still checked
+		paths.put("$['contact'].name", new JSONArray().put("Jane"));
+		assertThat(CompiledRules.compile(new JSONObject().put("$all", paths)).test(payload)).isFalse();
+	}
+
+	// Compiled or not, a profile must give the same results, the validator being the reference
+	@Test
+	public void agreesWithTheValidator() throws Exception {
+		ProfileOptions options = new ProfileOptions();
+		options.setCompiled(true);
+
+		ObjectMapper mapper = new ObjectMapper();
+		Random random = new Random(42);
+		for (int i = 0; i < 200; i++) {
+			JSONObject rules = randomRules(random);
+			CompiledProfile interpreted = new CompiledProfile(null, rules, 1);
+			CompiledProfile compiled = new CompiledProfile(null, rules, options);
+			assertThat(compiled.isCompiled()).isTrue();
+			CompiledRules compiledRules = CompiledRules.compile(rules);
+
+			for (int j = 0; j < 20; j++) {
+				JSONObject payload = randomPayload(random);
+				// Accepting a message the validator rejects is the only way to get a different result
+				if (compiledRules.test(payload))
+					assertThat(interpreted.validate(payload).isValid()).as("rules %s on %s", rules, payload).isTrue();
+				// Jackson documents must be accepted exactly like org.json ones
+				assertThat(compiledRules.test(mapper.readTree(payload.toString()))).as("rules %s on %s", rules, payload).isEqualTo(compiledRules.test(payload));
+				for (ExplainMode mode : new ExplainMode[] { ExplainMode.NONE, ExplainMode.FAILURES_ONLY, ExplainMode.IDS_ONLY })
+					assertThat(compiled.check(payload, mode, 0).toString())
+							.as("rules %s on %s explained with %s", rules, payload, mode)
+							.isEqualTo(interpreted.check(payload, mode, 0).toString());
+				assertThat(compiled.check(mapper.readTree(payload.toString()), ExplainMode.FAILURES_ONLY, 0).toString())
+						.as("rules %s on %s", rules, payload)
+						.isEqualTo(interpreted.check(payload, ExplainMode.FAILURES_ONLY, 0).toString());
+			}
+		}
+	}
+
+	private static JSONObject rules(String path, Object... values) {
+		JSONArray array = new JSONArray();
+		for (Object value : values)
+			array.put(value);
+		return new JSONObject().put("$all", new JSONObject().put(path, array));
+	}
+
+	private static JSONObject randomRules(Random random) {
+		JSONObject paths = new JSONObject();
+		int nbOfPaths = 1 + random.nextInt(3);
+		for (int i = 0; i < nbOfPaths; i++) {
+			// Only the values that can be compiled
+			JSONArray values = new JSONArray();
+			for (int j = 1 + random.nextInt(3); j > 0; j--)
+				values.put(VALUES[random.nextInt(5)]);
+			paths.put("$.contact.f" + random.nextInt(4), values);
+		}
+		return new JSONObject().put("$all", paths);
+	}
+
+	private static JSONObject randomPayload(Random random) {
+		JSONObject contact = new JSONObject();
+		for (int i = 0; i < 4; i++) {
+			int kind = random.nextInt(3);
+			if (kind == 1)
+				contact.put("f" + i, randomValues(random, random.nextInt(5)));
+			else if (kind == 2)
+				contact.put("f" + i, VALUES[random.nextInt(VALUES.length)]);
+		}
+		return new JSONObject().put("contact", contact);
+	}
+
+	private static JSONArray randomValues(Random random, int size) {
+		List<Object> values = new ArrayList<>();
+		for (int i = 0; i < size; i++)
+			values.add(VALUES[random.nextInt(VALUES.length)]);
+		return new JSONArray(values);
+	}
+
+}
@@ -0,0 +1,145 @@
+package gov.cdc.foundation.engine;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import gov.cdc.engine.result.ValidationResult;
+import gov.cdc.foundation.JSONMessageConverter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class ExplanationDetailsTest {
+
+	private static final String RULE = "{\"$.contact.hobbies\":[\"Ski\"]}";
+
+	@Test
+	public void writesFullDetails() {
+		ExplanationDetails details = new ExplanationDetails(ExplainMode.FULL, null);
+		details.add(result("hobbies", true));
+		details.add(result("skills", false));
+
+		JSONArray json = new JSONArray(details.toString());
+		assertThat(json.length()).isEqualTo(2);
+		JSONObject detail = json.getJSONObject(1);
+		assertThat(detail.getString("ID")).isEqualTo("skills");
+		assertThat(detail.getString("title")).isEqualTo("Title of skills");
+		assertThat(detail.getBoolean("passed")).isFalse();
+		assertThat(detail.getJSONObject("rule").similar(new JSONObject(RULE))).isTrue();
+	}
+
+	@Test
+	public void keepsFailuresOnly() {
+		ExplanationDetails details = new ExplanationDetails(ExplainMode.FAILURES_ONLY, null);
+		details.add(result("hobbies", true));
+		details.add(result("skills", false));
+
+		JSONArray json = new JSONArray(details.toString());
+		assertThat(json.length()).isEqualTo(1);
+		assertThat(json.getJSONObject(0).getString("ID")).isEqualTo("skills");
+
+		details = new ExplanationDetails(ExplainMode.IDS_ONLY, null);
+		details.add(result("hobbies", true));
+		details.add(result("skills", false));
+		assertThat(details.toString()).isEqualTo("[\"skills\"]");
+	}
+
+	@Test
+	public void referencesRulesInCompactMode() {
+		Map<String, String> references = new HashMap<>();
+		ExplanationDetails details = new ExplanationDetails(ExplainMode.COMPACT, references);
+		details.add(result("hobbies", true));
+		details.add(result("skills", false));
+
+		JSONObject response = CompiledProfile.createResponse(1, details);
+		// Written as they are, the details are only read back from the written response
+		assertThat(response.opt("details")).isNotInstanceOf(JSONArray.class);
+		JSONObject json = new JSONObject(response.toString());
+		String reference = ExplanationDetails.reference(RULE);
+		assertThat(json.getJSONArray("details").getJSONArray(1).toList()).containsExactly("skills", false, reference);
+		assertThat(json.getJSONObject("rules").keySet()).containsExactly(reference);
+		assertThat(json.getJSONObject("rules").getJSONObject(reference).similar(new JSONObject(RULE))).isTrue();
+		assertThat(references).containsEntry(RULE, reference);
+	}
+
+	@Test
+	public void streamsDetailsToTheResponse() throws Exception {
+		// The converter must never ask for the whole text of the details
+		ExplanationDetails details = new ExplanationDetails(ExplainMode.COMPACT, null) {
+			@Override
+			public String toJSONString() {
+				throw new UnsupportedOperationException();
+			}
+		};
+		details.add(result("hobbies", true));
+		details.add(result("skills", false));
+		JSONObject response = CompiledProfile.createResponse(1, details);
+		response.put("title", "Caf\u00e9 \"rules\"").put("results", new JSONArray().put(new JSONObject().put("valid", true)).put(JSONObject.NULL));
+
+		MockHttpOutputMessage output = new MockHttpOutputMessage();
+		new JSONMessageConverter(new SimpleMeterRegistry().timer("test")).write(response, MediaType.APPLICATION_JSON, output);
+		JSONObject json = new JSONObject(output.getBodyAsString(StandardCharsets.UTF_8));
+		assertThat(json.getJSONArray("details").getJSONArray(1).toList()).containsExactly("skills", false, ExplanationDetails.reference(RULE));
+		assertThat(json.getJSONObject("rules").keySet()).containsExactly(ExplanationDetails.reference(RULE));
+		assertThat(json.getString("title")).isEqualTo("Caf\u00e9 \"rules\"");
+		assertThat(json.getJSONArray("results").getJSONObject(0).getBoolean("valid")).isTrue();
+		assertThat(json.getJSONArray("results").isNull(1)).isTrue();
+		assertThat(json.getInt("errors")).isEqualTo(1);
+	}
+
+	@Test
+	public void referencesAreTheStartOfTheRuleHash() {
+		// First 8 bytes of the SHA-256 of the rule, in lowercase hex
+		assertThat(ExplanationDetails.reference("abc")).isEqualTo("ba7816bf8f01cfea");
+	}
+
+	@Test
+	public void parsesExplainModes() {
+		assertThat(ExplainMode.parse(null)).isEqualTo(ExplainMode.NONE);
+		for (String value : new String[] { "true", "TRUE", "full", "1", "yes", "On" })
+			assertThat(ExplainMode.parse(value)).isEqualTo(ExplainMode.FULL);
+		for (String value : new String[] { "false", "False", "0", "no", "OFF" })
+			assertThat(ExplainMode.parse(value)).isEqualTo(ExplainMode.NONE);
+		assertThat(ExplainMode.parse("failuresonly")).isEqualTo(ExplainMode.FAILURES_ONLY);
+		assertThat(ExplainMode.parse("IDSONLY")).isEqualTo(ExplainMode.IDS_ONLY);
+		assertThat(ExplainMode.parse("Compact")).isEqualTo(ExplainMode.COMPACT);
+		assertThat(ExplainMode.parse("maybe")).isNull();
+	}
+
+	private static ValidationResult result(String id, boolean valid) {
+		return new ValidationResult() {
+			@Override
+			public boolean isValid() {
+				return valid;
+			}
+
+			@Override
+			public String getDescription() {
+				return id;
+			}
+
+			@Override
+			public String getComment() {
+				return "Title of " + id;
+			}
+
+			@Override
+			public String getCommand() {
+				return "$all";
+			}
+
+			@Override
+			public String getRule() {
+				return RULE;
+			}
+		};
+	}
+
+}
@@ -0,0 +1,34 @@
+package gov.cdc.foundation.engine;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class JsonNodesTest {
+
+	@Test
+	public void convertsLikeOrgJson() {
+		String text = "{\"name\":\"Ben\",\"age\":33,\"id\":12345678901,\"big\":123456789012345678901234567890,\"score\":0.6,\"active\":true,\"spouse\":null,"
+				+ "\"hobbies\":[\"Ski\",1,2.5,false,null,{\"since\":2010}],\"address\":{\"zip\":\"30333\",\"lines\":[]}}";
+		JSONObject expected = new JSONObject(text);
+		JSONObject converted = JsonNodes.toJSONObject(JsonNodes.parseObject(text.getBytes(StandardCharsets.UTF_8)));
+
+		assertThat(converted.similar(expected)).isTrue();
+		assertThat(converted.toString()).isEqualTo(expected.toString());
+		assertThat(converted.get("id")).isInstanceOf(Long.class);
+		assertThat(converted.get("big")).isEqualTo(expected.get("big"));
+	}
+
+	@Test
+	public void parsesObjectsOnly() {
+		assertThat(JsonNodes.parseObject("[{}]".getBytes(StandardCharsets.UTF_8))).isNull();
+		assertThat(JsonNodes.parseObject("{\"name\":".getBytes(StandardCharsets.UTF_8))).isNull();
+		assertThat(JsonNodes.parseObject("{\"name\":1,\"name\":2}".getBytes(StandardCharsets.UTF_8))).isNull();
+		assertThat(JsonNodes.parseObject(new byte[0])).isNull();
+		assertThat(JsonNodes.parseObject("{\"name\":\"Bén\"}".getBytes(StandardCharsets.UTF_16)).get("name").textValue()).isEqualTo("Bén");
+	}
+
+}
@@ -0,0 +1,28 @@
+package gov.cdc.foundation.engine;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+public class PathExpressionTest {
+
+	@Test
+	public void parsesDefinitePaths() {
+		assertThat(PathExpression.parse("$.contact.hobbies").getTokens()).containsExactly("contact", "hobbies");
+		assertThat(PathExpression.parse("$['first name'].items[2]").getTokens()).containsExactly("first name", "items", 2);
+		assertThat(PathExpression.parse("$..hobbies")).isNull();
+		assertThat(PathExpression.parse("$.items[*]")).isNull();
+		assertThat(PathExpression.parse("$.items[?(@.id)]")).isNull();
+	}
+
+	@Test
+	public void parsesDefinitePrefixes() {
+		assertThat(PathExpression.parsePrefix("$.contact.hobbies").getTokens()).containsExactly("contact", "hobbies");
+		assertThat(PathExpression.parsePrefix("$.contact.hobbies[*]").getPath()).isEqualTo("$.contact.hobbies");
+		assertThat(PathExpression.parsePrefix("$.items[?(@.id)].name").getTokens()).containsExactly("items");
+		assertThat(PathExpression.parsePrefix("$.contact..name").getTokens()).containsExactly("contact");
+		assertThat(PathExpression.parsePrefix("$..name").getTokens()).isEmpty();
+		assertThat(PathExpression.parsePrefix("contact")).isNull();
+	}
+
+}
@@ -0,0 +1,73 @@
+package gov.cdc.foundation.engine;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class ProjectionTest {
+
+	private static final String PAYLOAD = "{\"contact\":{\"name\":\"Ben\",\"age\":33,\"hobbies\":[\"Ski\",\"Cinema\"],\"address\":{\"zip\":\"30333\"}},"
+			+ "\"items\":[{\"id\":1,\"tags\":[\"a\"]},{\"id\":2.50,\"tags\":[]},{\"id\":3}],\"report\":{\"text\":\"...\",\"codes\":[1,2,3]}}";
+
+	@Test
+	public void keepsReadValuesOnly() {
+		JSONObject projected = project(rules("$.contact.hobbies", "$.contact.age", "$.items[1].id"), PAYLOAD);
+
+		assertThat(projected.keySet()).containsOnly("contact", "items");
+		assertThat(projected.getJSONObject("contact").keySet()).containsOnly("hobbies", "age");
+		assertThat(projected.getJSONObject("contact").getJSONArray("hobbies").toList()).containsExactly("Ski", "Cinema");
+		// Indexes don't change, items after the last read one are dropped
+		assertThat(projected.getJSONArray("items").length()).isEqualTo(2);
+		assertThat(projected.getJSONArray("items").get(0)).isEqualTo(JSONObject.NULL);
+		assertThat(projected.getJSONArray("items").getJSONObject(1).toString()).isEqualTo("{\"id\":2.5}");
+	}
+
+	@Test
+	public void keepsIndefinitePathsWhole() {
+		JSONObject expected = new JSONObject(PAYLOAD);
+
+		JSONObject projected = project(rules("$.items[*].id", "$.contact..zip"), PAYLOAD);
+		assertThat(projected.getJSONArray("items").similar(expected.getJSONArray("items"))).isTrue();
+		assertThat(projected.getJSONObject("contact").similar(expected.getJSONObject("contact"))).isTrue();
+		assertThat(projected.has("report")).isFalse();
+
+		// A value of another type than the path expects is kept as it is
+		projected = project(rules("$.contact[0]", "$.items.id"), PAYLOAD);
+		assertThat(projected.similar(new JSONObject().put("contact", expected.get("contact")).put("items", expected.get("items")))).isTrue();
+	}
+
+	@Test
+	public void projectsSomeRulesetsOnly() {
+		assertThat(Projection.of(rules("$..name"))).isNull();
+		assertThat(Projection.of(rules("$.contact", "$"))).isNull();
+		assertThat(Projection.of(new JSONObject())).isNull();
+		assertThat(Projection.of(new JSONObject().put("$all", new JSONArray()))).isNull();
+		assertThat(Projection.of(rules("$.contact.name", "$.contact.age")).getNumberOfPaths()).isEqualTo(2);
+	}
+
+	@Test
+	public void rejectsInvalidObjects() {
+		Projection projection = Projection.of(rules("$.contact.name"));
+		assertThat(projection.parse("[{}]".getBytes(StandardCharsets.UTF_8))).isNull();
+		assertThat(projection.parse("{\"contact\":{\"name\":\"Ben\"},\"report\":{".getBytes(StandardCharsets.UTF_8))).isNull();
+		// Duplicate keys are rejected even when they are skipped
+		assertThat(projection.parse("{\"report\":{\"a\":1,\"a\":2}}".getBytes(StandardCharsets.UTF_8))).isNull();
+		assertThat(projection.parse("{\"contact\":{\"name\":\"Ben\"}} {}".getBytes(StandardCharsets.UTF_8))).isNull();
+	}
+
+	private static JSONObject project(JSONObject rules, String payload) {
+		return Projection.of(rules).parse(payload.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static JSONObject rules(String... paths) {
+		JSONObject all = new JSONObject();
+		for (String path : paths)
+			all.put(path, new JSONArray().put("value"));
+		return new JSONObject().put("$all", all);
+	}
+
+}
@@ -0,0 +1,65 @@
+package gov.cdc.foundation.engine;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class RuleSegmentTest {
+
+	@Test
+	public void splitsConjunctiveOperators() throws Exception {
+		JSONObject rules = new JSONObject();
+		rules.put("$all", new JSONObject()
+				.put("$.contact.hobbies", new JSONArray().put("Travel").put("Ski"))
+				.put("$.contact.skills", new JSONArray().put("Java")));
+
+		List<RuleSegment> segments = RuleSegment.split(rules, RuleSegment.DEFAULT_OPERATORS, 1);
+		assertThat(segments).hasSize(2);
+		for (RuleSegment segment : segments) {
+			assertThat(segment.getOperator()).isEqualTo("$all");
+			assertThat(segment.getRules().getJSONObject("$all").keySet()).containsExactly(segment.getPath());
+		}
+	}
+
+	@Test
+	public void keepsOtherRulesetsWhole() throws Exception {
+		JSONObject rules = new JSONObject();
+		rules.put("$all", new JSONObject().put("$.contact.hobbies", new JSONArray().put("Ski")));
+		rules.put("$any", new JSONObject().put("$.contact.hobbies", new JSONArray().put("Ski")));
+
+		List<RuleSegment> segments = RuleSegment.split(rules, RuleSegment.DEFAULT_OPERATORS, 1);
+		assertThat(segments).hasSize(1);
+		assertThat(segments.get(0).getPath()).isNull();
+		assertThat(segments.get(0).getRules().similar(rules)).isTrue();
+	}
+
+	@Test
+	public void ranksByCostPerRejection() throws Exception {
+		JSONObject rules = new JSONObject();
+		rules.put("$all", new JSONObject()
+				.put("$.cheap", new JSONArray().put("a"))
+				.put("$.selective", new JSONArray().put("b"))
+				.put("$.useless", new JSONArray().put("c")));
+		List<RuleSegment> segments = RuleSegment.split(rules, RuleSegment.DEFAULT_OPERATORS, 1);
+		assertThat(RuleSegment.rank(segments)).isNull();
+
+		for (int i = 0; i < SegmentStats.MIN_EVALUATIONS; i++)
+			for (RuleSegment segment : segments) {
+				if ("$.cheap".equals(segment.getPath()))
+					segment.getStats().record(100, i % 5 == 0);
+				else if ("$.selective".equals(segment.getPath()))
+					segment.getStats().record(500, i % 2 == 0);
+				else
+					segment.getStats().record(50, false);
+			}
+
+		// 100ns / 20% = 500ns, 500ns / 50% = 1000ns, and segments that never fail run last
+		List<RuleSegment> ranked = RuleSegment.rank(segments);
+		assertThat(ranked).extracting(RuleSegment::getPath).containsExactly("$.cheap", "$.selective", "$.useless");
+	}
+
+}
@@ -0,0 +1,86 @@
+package gov.cdc.foundation.engine;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ValidationStreamTest {
+
+	private ExecutorService executor;
+
+	@Before
+	public void setup() {
+		executor = Executors.newFixedThreadPool(4);
+	}
+
+	@After
+	public void teardown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void keepsInputOrderInParallel() throws Exception {
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 200; i++)
+			input.append("{\"id\":").append(i).append("}\n");
+
+		ValidationStream stream = new ValidationStream(message -> {
+			// Finish out of order on purpose
+			LockSupport.parkNanos(ThreadLocalRandom.current().nextInt(2000000));
+			JSONObject result = new JSONObject();
+			result.put("valid", message.getInt("id") % 2 == 0);
+			result.put("id", message.getInt("id"));
+			return result;
+		}, executor, 8);
+		String[] lines = process(stream, input.toString());
+
+		assertThat(lines.length).isEqualTo(200);
+		for (int i = 0; i < lines.length; i++) {
+			JSONObject result = new JSONObject(lines[i]);
+			assertThat(result.getInt("index")).isEqualTo(i);
+			assertThat(result.getInt("id")).isEqualTo(i);
+		}
+		assertThat(stream.getTotal()).isEqualTo(200);
+		assertThat(stream.getValid()).isEqualTo(100);
+	}
+
+	@Test
+	public void readsTopLevelArray() throws Exception {
+		ValidationStream stream = new ValidationStream(message -> new JSONObject().put("valid", true));
+		String[] lines = process(stream, "[{\"a\":1}, 2, {\"b\":2}]");
+
+		assertThat(lines.length).isEqualTo(3);
+		assertThat(new JSONObject(lines[1]).getBoolean("valid")).isFalse();
+		assertThat(new JSONObject(lines[1]).has("error")).isTrue();
+		assertThat(stream.getValid()).isEqualTo(2);
+	}
+
+	@Test
+	public void reportsMalformedInputAsLastLine() throws Exception {
+		ValidationStream stream = new ValidationStream(message -> new JSONObject().put("valid", true), executor, 2);
+		String[] lines = process(stream, "{\"a\":1}\n{\"b\":\n");
+
+		assertThat(lines.length).isEqualTo(2);
+		assertThat(new JSONObject(lines[0]).getBoolean("valid")).isTrue();
+		assertThat(new JSONObject(lines[1]).has("error")).isTrue();
+		assertThat(stream.getTotal()).isEqualTo(1);
+	}
+
+	private String[] process(ValidationStream stream, String input) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		stream.process(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), out);
+		return new String(out.toByteArray(), StandardCharsets.UTF_8).trim().split("\n");
+	}
+
+}
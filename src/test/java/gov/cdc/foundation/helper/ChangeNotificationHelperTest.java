@@ -0,0 +1,76 @@
+package gov.cdc.foundation.helper;
+
+import static gov.cdc.foundation.RulesFixtures.hobbies;
+import static gov.cdc.foundation.RulesFixtures.hobby;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import gov.cdc.foundation.repository.RulesRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class ChangeNotificationHelperTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void syncsTheLocalStoreWhenChangesWereMissed() throws Exception {
+		ProfileCacheHelper previousProfiles = ProfileCacheHelper.getInstance();
+		ChangeNotificationHelper previousNotifications = ChangeNotificationHelper.getInstance();
+		MetricsHelper previousMetrics = MetricsHelper.getInstance();
+		RulesRepositoryHelper previousRepository = RulesRepositoryHelper.getInstance();
+
+		RulesRepositoryHelper repository = new RulesRepositoryHelper(RulesRepositoryHelper.STORE_LOCAL, folder.getRoot().getPath(), false);
+		ProfileCacheHelper profiles = new ProfileCacheHelper(true, 100, 300, 10, 1, 0, new String[] { "$all" }, false, 0, false, false, new MetricsHelper(new SimpleMeterRegistry()), repository);
+		ChangeNotificationHelper notifications = new ChangeNotificationHelper(new String[0], "", 0, 15, profiles, repository);
+		try {
+			repository.save(null, "unit-test", hobbies("Ski"));
+			assertThat(profiles.get(null, "unit-test").getVersion()).isEqualTo(1);
+
+			// Another instance saved a new version in the object microservice while this one wasn't notified
+			Map<String, JSONObject> remote = new HashMap<>();
+			remote.put("unit-test", repository.get(null, "unit-test").put(RulesRepositoryHelper.FIELD_VERSION, 2).put("$all", hobbies("Travel").get("$all")));
+			ReflectionTestUtils.setField(repository, "remote", new RulesRepository() {
+				@Override
+				public JSONObject get(String authorizationHeader, String profile) {
+					return remote.get(profile);
+				}
+
+				@Override
+				public Map<String, JSONObject> findLatest(String authorizationHeader) {
+					return remote;
+				}
+
+				@Override
+				public void save(String authorizationHeader, String profile, JSONObject rules) {
+					remote.put(profile, rules);
+				}
+
+				@Override
+				public boolean create(String authorizationHeader, String key, JSONObject rules) {
+					return remote.putIfAbsent(key, rules) == null;
+				}
+			});
+
+			notifications.onConnect(new JSONObject().put("origin", "peer").put("sequence", 5));
+			assertThat(profiles.get(null, "unit-test").getVersion()).isEqualTo(2);
+			assertThat(hobby(profiles.get(null, "unit-test").getRules())).isEqualTo("Travel");
+		} finally {
+			notifications.shutdown();
+			repository.shutdown();
+			ReflectionTestUtils.setField(ProfileCacheHelper.class, "instance", previousProfiles);
+			ReflectionTestUtils.setField(ChangeNotificationHelper.class, "instance", previousNotifications);
+			ReflectionTestUtils.setField(MetricsHelper.class, "instance", previousMetrics);
+			ReflectionTestUtils.setField(RulesRepositoryHelper.class, "instance", previousRepository);
+		}
+	}
+
+}
@@ -0,0 +1,55 @@
+package gov.cdc.foundation.helper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import gov.cdc.helper.common.ServiceException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class ObjectClientHelperTest {
+
+	@Test
+	public void waitsForAPooledConnection() throws Exception {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		String jdkMaxConnections = System.getProperty("http.maxConnections");
+		ObjectClientHelper client = new ObjectClientHelper(1, 50, new MetricsHelper(registry));
+		// The process wide JDK settings are only set by the main method
+		assertThat(System.getProperty("http.maxConnections")).isEqualTo(jdkMaxConnections);
+		assertThat(client.execute(() -> "first")).isEqualTo("first");
+
+		// The only connection is busy until the latch is released
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CompletableFuture<String> busy = CompletableFuture.supplyAsync(() -> {
+			try {
+				return client.execute(() -> {
+					started.countDown();
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						throw new ServiceException(e);
+					}
+					return "busy";
+				});
+			} catch (ServiceException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		started.await();
+		assertThat(client.getActive()).isEqualTo(1);
+		assertThat(registry.get(MetricsHelper.GAUGE_OBJECT_ACTIVE).gauge().value()).isEqualTo(1);
+
+		assertThatThrownBy(() -> client.execute(() -> "saturated")).isInstanceOf(ServiceException.class);
+		assertThat(registry.get(MetricsHelper.COUNTER_OBJECT_SATURATED).counter().count()).isEqualTo(1);
+
+		release.countDown();
+		assertThat(busy.get()).isEqualTo("busy");
+		assertThat(client.getActive()).isEqualTo(0);
+	}
+
+}
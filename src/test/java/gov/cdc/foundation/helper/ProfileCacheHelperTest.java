@@ -0,0 +1,266 @@
+package gov.cdc.foundation.helper;
+
+import static gov.cdc.foundation.RulesFixtures.hobbies;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import gov.cdc.engine.ValidatorException;
+import gov.cdc.foundation.engine.CompiledProfile;
+import gov.cdc.foundation.engine.ValidatorPool;
+import gov.cdc.helper.common.ServiceException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class ProfileCacheHelperTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void remembersMissingProfiles() throws Exception {
+		CountingRepository repository = new CountingRepository(folder.getRoot().getPath());
+		try {
+			ProfileCacheHelper profiles = newProfiles(true, repository);
+			assertThat(profiles.get(null, "unknown")).isNull();
+			assertThat(profiles.get(null, "unknown")).isNull();
+			assertThat(repository.reads.get()).isEqualTo(1);
+			assertThat(profiles.getStats().getLong("missing")).isEqualTo(1);
+
+			// Creating the profile makes it available right away
+			JSONObject rules = hobbies("Ski");
+			int version = repository.save(null, "unknown", rules);
+			profiles.publish("unknown", rules, version);
+			assertThat(profiles.get(null, "unknown")).isNotNull();
+			assertThat(profiles.getStats().getLong("missing")).isEqualTo(0);
+		} finally {
+			repository.shutdown();
+		}
+	}
+
+	@Test
+	public void tagsFetchesOfUnknownProfilesTogether() throws Exception {
+		CountingRepository repository = new CountingRepository(folder.getRoot().getPath());
+		try {
+			repository.save(null, "profile", hobbies("Ski"));
+			SimpleMeterRegistry registry = new SimpleMeterRegistry();
+			ProfileCacheHelper profiles = new ProfileCacheHelper(true, 100, 300, 10, 1, 0, new String[] { "$all" }, false, 0, false, false, new MetricsHelper(registry), repository);
+			assertThat(profiles.get(null, "profile")).isNotNull();
+			for (int i = 0; i < 10; i++)
+				assertThat(profiles.get(null, "unknown-" + i)).isNull();
+
+			assertThat(registry.find(MetricsHelper.TIMER_FETCH).timers()).hasSize(2);
+			assertThat(registry.get(MetricsHelper.TIMER_FETCH).tag("profile", "profile").timer().count()).isEqualTo(1);
+			assertThat(registry.get(MetricsHelper.TIMER_FETCH).tag("profile", "none").timer().count()).isEqualTo(10);
+		} finally {
+			repository.shutdown();
+		}
+	}
+
+	@Test
+	public void keepsOneValidatorPerWorkerByDefault() throws Exception {
+		CountingRepository repository = new CountingRepository(folder.getRoot().getPath());
+		try {
+			MetricsHelper metrics = new MetricsHelper(new SimpleMeterRegistry());
+			ProfileCacheHelper profiles = new ProfileCacheHelper(true, 100, 300, 10, 0, 24, new String[] { "$all" }, false, 0, false, false, metrics, repository);
+			assertThat(profiles.getOptions().getPoolSize()).isEqualTo(24);
+			profiles = new ProfileCacheHelper(true, 100, 300, 10, 0, 0, new String[] { "$all" }, false, 0, false, false, metrics, repository);
+			assertThat(profiles.getOptions().getPoolSize()).isEqualTo(Runtime.getRuntime().availableProcessors());
+			profiles = new ProfileCacheHelper(true, 100, 300, 10, 4, 24, new String[] { "$all" }, false, 0, false, false, metrics, repository);
+			assertThat(profiles.getOptions().getPoolSize()).isEqualTo(4);
+		} finally {
+			repository.shutdown();
+		}
+	}
+
+	@Test
+	public void namesTheRuleTheValidatorRejects() throws Exception {
+		CountingRepository repository = new CountingRepository(folder.getRoot().getPath());
+		try {
+			ProfileCacheHelper profiles = newProfiles(true, repository);
+			profiles.getOptions().setValidatorFactory(rules -> {
+				if (rules.toString().contains("Unknown"))
+					throw new ValidatorException("Unknown hobby");
+				return ValidatorPool.SIMPLE_VALIDATOR.create(rules);
+			});
+
+			JSONObject rules = hobbies("Ski");
+			rules.put("$has", new JSONObject().put("$.contact.skills", new JSONArray().put("Unknown")));
+			try {
+				profiles.compileNew("profile", rules);
+				fail("The rules should have been rejected");
+			} catch (ServiceException e) {
+				assertThat(e.getMessage()).isEqualTo("The rule $.contact.skills of $has is not valid: Unknown hobby");
+			}
+			assertThat(profiles.getCached("profile")).isNull();
+		} finally {
+			repository.shutdown();
+		}
+	}
+
+	@Test
+	public void neverRemembersFailedLoads() throws Exception {
+		CountingRepository repository = new CountingRepository(folder.getRoot().getPath());
+		try {
+			repository.save(null, "profile", hobbies("Ski"));
+			ProfileCacheHelper profiles = newProfiles(true, repository);
+			repository.failing = true;
+			try {
+				profiles.get(null, "profile");
+				fail("The load should have failed");
+			} catch (ServiceException e) {
+				assertThat(profiles.getStats().getLong("missing")).isEqualTo(0);
+			}
+
+			repository.failing = false;
+			assertThat(profiles.get(null, "profile")).isNotNull();
+		} finally {
+			repository.shutdown();
+		}
+	}
+
+	@Test
+	public void publishedProfilesAreNeverMissing() throws Exception {
+		CountingRepository repository = new CountingRepository(folder.getRoot().getPath());
+		try {
+			ProfileCacheHelper profiles = newProfiles(true, repository);
+			assertThat(profiles.get(null, "profile")).isNull();
+
+			// Published while a load that found nothing was finishing
+			JSONObject rules = hobbies("Ski");
+			CompiledProfile compiled = profiles.compileNew("profile", rules);
+			profiles.publish("profile", compiled, repository.save(null, "profile", rules));
+			assertThat(profiles.get(null, "profile")).isSameAs(compiled);
+			assertThat(profiles.get(null, "profile", compiled.getVersion())).isSameAs(compiled);
+		} finally {
+			repository.shutdown();
+		}
+	}
+
+	@Test
+	public void keepsTheLatestPublishedVersion() throws Exception {
+		CountingRepository repository = new CountingRepository(folder.getRoot().getPath());
+		try {
+			ProfileCacheHelper profiles = newProfiles(true, repository);
+			CompiledProfile second = profiles.compileNew("profile", hobbies("Travel"));
+			CompiledProfile third = profiles.compileNew("profile", hobbies("Ski"));
+
+			// Upserts that finish out of order
+			profiles.publish("profile", third, 3);
+			profiles.publish("profile", second, 2);
+			assertThat(profiles.get(null, "profile")).isSameAs(third);
+			assertThat(profiles.get(null, "profile", 2)).isSameAs(second);
+		} finally {
+			repository.shutdown();
+		}
+	}
+
+	@Test
+	public void sharesConcurrentLoads() throws Exception {
+		CountingRepository repository = new CountingRepository(folder.getRoot().getPath());
+		repository.save(null, "profile", hobbies("Ski"));
+		repository.release = new CountDownLatch(1);
+		List<Thread> threads = new ArrayList<>();
+		ExecutorService executor = Executors.newFixedThreadPool(8, task -> {
+			Thread thread = new Thread(task);
+			threads.add(thread);
+			return thread;
+		});
+		CountDownLatch arrived = new CountDownLatch(8);
+		try {
+			// Without cache, only requests arriving during a load share it
+			ProfileCacheHelper profiles = newProfiles(false, repository);
+			List<Future<CompiledProfile>> results = new ArrayList<>();
+			for (int i = 0; i < 8; i++)
+				results.add(executor.submit(() -> {
+					arrived.countDown();
+					return profiles.get(null, "profile");
+				}));
+
+			// The load is released once every request waits, either for the repository or for the load in progress
+			arrived.await();
+			repository.started.await();
+			for (Thread thread : threads)
+				while (thread.getState() != Thread.State.WAITING)
+					Thread.yield();
+			repository.release.countDown();
+
+			CompiledProfile first = results.get(0).get();
+			assertThat(first).isNotNull();
+			for (Future<CompiledProfile> result : results)
+				assertThat(result.get()).isSameAs(first);
+			assertThat(repository.reads.get()).isEqualTo(1);
+		} finally {
+			executor.shutdownNow();
+			repository.shutdown();
+		}
+	}
+
+	@Test
+	public void publishesRulesCompiledBeforeBeingStored() throws Exception {
+		CountingRepository repository = new CountingRepository(folder.getRoot().getPath());
+		try {
+			ProfileCacheHelper profiles = newProfiles(true, repository);
+			JSONObject rules = hobbies("Ski")
+					.put(RulesRepositoryHelper.FIELD_OPTIONS, new JSONObject().put(ProfileCacheHelper.OPTION_COMPILED, true));
+			CompiledProfile compiled = profiles.compileNew("profile", rules);
+			assertThat(compiled.getRules().has(RulesRepositoryHelper.FIELD_OPTIONS)).isFalse();
+			assertThat(compiled.isCompiled()).isTrue();
+			assertThat(rules.has(RulesRepositoryHelper.FIELD_OPTIONS)).isTrue();
+
+			int version = repository.save(null, "profile", rules);
+			profiles.publish("profile", compiled, version);
+			assertThat(profiles.get(null, "profile")).isSameAs(compiled);
+			assertThat(compiled.getVersion()).isEqualTo(version);
+			assertThat(repository.reads.get()).isEqualTo(0);
+		} finally {
+			repository.shutdown();
+		}
+	}
+
+	private static ProfileCacheHelper newProfiles(boolean enabled, RulesRepositoryHelper repository) {
+		return new ProfileCacheHelper(enabled, 100, 300, 10, 1, 0, new String[] { "$all" }, false, 0, false, false, new MetricsHelper(new SimpleMeterRegistry()), repository);
+	}
+
+	private static class CountingRepository extends RulesRepositoryHelper {
+
+		private final AtomicInteger reads = new AtomicInteger();
+		private final CountDownLatch started = new CountDownLatch(1);
+		private volatile CountDownLatch release;
+		private volatile boolean failing;
+
+		public CountingRepository(String path) throws IOException {
+			super(RulesRepositoryHelper.STORE_LOCAL, path, false);
+		}
+
+		@Override
+		public JSONObject get(String authorizationHeader, String profile, Integer version) throws ServiceException {
+			reads.incrementAndGet();
+			started.countDown();
+			if (failing)
+				throw new ServiceException("The object service is not available");
+			try {
+				if (release != null)
+					release.await();
+			} catch (InterruptedException e) {
+				throw new ServiceException(e);
+			}
+			return super.get(authorizationHeader, profile, version);
+		}
+
+	}
+
+}
@@ -0,0 +1,91 @@
+package gov.cdc.foundation.helper;
+
+import static gov.cdc.foundation.RulesFixtures.hobbies;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import gov.cdc.foundation.engine.CompiledProfile;
+import gov.cdc.foundation.engine.ExplainMode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class ResultCacheHelperTest {
+
+	private static final byte[] PAYLOAD = "{\"contact\":{\"hobbies\":[\"Ski\"]}}".getBytes(StandardCharsets.UTF_8);
+
+	@Test
+	public void storesResultsPerRulesAndParameters() throws Exception {
+		ResultCacheHelper results = new ResultCacheHelper(true, 1, 300, new MetricsHelper(new SimpleMeterRegistry()));
+		CompiledProfile rules = profile("Ski", 1);
+		JSONObject response = CompiledProfile.createResponse(0, null);
+
+		results.put(results.key(rules, PAYLOAD, ExplainMode.NONE, 0), response);
+		ResultCacheHelper.Result result = results.get(results.key(rules, PAYLOAD.clone(), ExplainMode.NONE, 0));
+		assertThat(result).isNotNull();
+		assertThat(result.isValid()).isTrue();
+		assertThat(new String(result.getBody(), StandardCharsets.UTF_8)).isEqualTo(response.toString());
+
+		assertThat(results.get(results.key(rules, "{}".getBytes(StandardCharsets.UTF_8), ExplainMode.NONE, 0))).isNull();
+		assertThat(results.get(results.key(rules, PAYLOAD, ExplainMode.FULL, 0))).isNull();
+		assertThat(results.get(results.key(rules, PAYLOAD, ExplainMode.NONE, 1))).isNull();
+		// Other rules, even with the same version number, never get the result
+		assertThat(results.get(results.key(profile("Cinema", 1), PAYLOAD, ExplainMode.NONE, 0))).isNull();
+		assertThat(results.get(results.key(profile("Ski", 2), PAYLOAD, ExplainMode.NONE, 0))).isNull();
+
+		JSONObject stats = results.getStats();
+		assertThat(stats.getLong("hits")).isEqualTo(1);
+		assertThat(stats.getLong("misses")).isEqualTo(5);
+	}
+
+	@Test
+	public void storesWholeResponsesPerModes() throws Exception {
+		ResultCacheHelper results = new ResultCacheHelper(true, 1, 300, new MetricsHelper(new SimpleMeterRegistry()));
+		CompiledProfile rules = profile("Ski", 1);
+		JSONObject compact = CompiledProfile.createResponse(0, null)
+				.put(MessageHelper.CONST_DETAILS, new JSONArray().put(new JSONArray().put("ID").put(true).put("ba7816bf8f01cfea")))
+				.put(MessageHelper.CONST_RULES, new JSONObject().put("ba7816bf8f01cfea", "$.contact.hobbies"));
+		JSONObject failFast = CompiledProfile.createResponse(1, null).put(MessageHelper.CONST_PARTIAL, true);
+
+		results.put(results.key(rules, PAYLOAD, ExplainMode.COMPACT, 0), compact);
+		results.put(results.key(rules, PAYLOAD, ExplainMode.NONE, 1), failFast);
+
+		ResultCacheHelper.Result result = results.get(results.key(rules, PAYLOAD, ExplainMode.COMPACT, 0));
+		assertThat(result.isValid()).isTrue();
+		assertThat(result.getErrors()).isEqualTo(0);
+		assertThat(new JSONObject(new String(result.getBody(), StandardCharsets.UTF_8)).similar(compact)).isTrue();
+
+		result = results.get(results.key(rules, PAYLOAD, ExplainMode.NONE, 1));
+		assertThat(result.isValid()).isFalse();
+		assertThat(result.getErrors()).isEqualTo(1);
+		assertThat(new JSONObject(new String(result.getBody(), StandardCharsets.UTF_8)).getBoolean(MessageHelper.CONST_PARTIAL)).isTrue();
+
+		// A disabled cache is never read by the controller
+		assertThat(new ResultCacheHelper(false, 1, 300, new MetricsHelper(new SimpleMeterRegistry())).isEnabled()).isFalse();
+	}
+
+	@Test
+	public void boundsMemory() throws Exception {
+		ResultCacheHelper results = new ResultCacheHelper(true, 1, 300, new MetricsHelper(new SimpleMeterRegistry()));
+		CompiledProfile rules = profile("Ski", 1);
+		JSONObject response = CompiledProfile.createResponse(0, null);
+		response.put(MessageHelper.CONST_DETAILS, new JSONArray().put(new String(new char[10 * 1024]).replace('\0', 'x')));
+
+		for (int i = 0; i < 1000; i++)
+			results.put(results.key(rules, ("{\"id\":" + i + "}").getBytes(StandardCharsets.UTF_8), ExplainMode.FULL, 0), response);
+
+		JSONObject stats = results.getStats();
+		assertThat(stats.getLong("bytes")).isLessThanOrEqualTo(1024 * 1024).isGreaterThan(0);
+		assertThat(stats.getLong("evictions")).isGreaterThan(0);
+	}
+
+	private static CompiledProfile profile(String hobby, int version) throws Exception {
+		CompiledProfile profile = new CompiledProfile("profile", hobbies(hobby), 1);
+		profile.setVersion(version);
+		return profile;
+	}
+
+}
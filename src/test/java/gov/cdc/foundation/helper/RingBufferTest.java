@@ -0,0 +1,59 @@
+package gov.cdc.foundation.helper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class RingBufferTest {
+
+	@Test
+	public void rejectsWhenFull() {
+		RingBuffer<Integer> buffer = new RingBuffer<>(3);
+		assertThat(buffer.capacity()).isEqualTo(4);
+		for (int i = 0; i < 4; i++)
+			assertThat(buffer.offer(i)).isTrue();
+		assertThat(buffer.offer(4)).isFalse();
+
+		assertThat(buffer.poll()).isEqualTo(0);
+		assertThat(buffer.offer(4)).isTrue();
+		for (int i = 1; i <= 4; i++)
+			assertThat(buffer.poll()).isEqualTo(i);
+		assertThat(buffer.poll()).isNull();
+		assertThat(buffer.size()).isEqualTo(0);
+	}
+
+	@Test
+	public void concurrentProducers() throws Exception {
+		int nbOfProducers = 4;
+		int nbOfEvents = 50000;
+		RingBuffer<Integer> buffer = new RingBuffer<>(1024);
+		AtomicInteger rejected = new AtomicInteger();
+		CountDownLatch done = new CountDownLatch(nbOfProducers);
+
+		List<Thread> producers = new ArrayList<>();
+		for (int p = 0; p < nbOfProducers; p++) {
+			Thread producer = new Thread(() -> {
+				for (int i = 0; i < nbOfEvents; i++)
+					if (!buffer.offer(i))
+						rejected.incrementAndGet();
+				done.countDown();
+			});
+			producers.add(producer);
+			producer.start();
+		}
+
+		int consumed = 0;
+		while (done.getCount() > 0 || buffer.size() > 0)
+			if (buffer.poll() != null)
+				consumed++;
+
+		// Every event is either consumed once or rejected, nothing is lost or duplicated
+		assertThat(consumed + rejected.get()).isEqualTo(nbOfProducers * nbOfEvents);
+	}
+
+}
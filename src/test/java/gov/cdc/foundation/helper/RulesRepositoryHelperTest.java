@@ -0,0 +1,114 @@
+package gov.cdc.foundation.helper;
+
+import static gov.cdc.foundation.RulesFixtures.hobbies;
+import static gov.cdc.foundation.RulesFixtures.hobby;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import gov.cdc.foundation.repository.LocalRulesRepository;
+import gov.cdc.foundation.repository.RulesRepository;
+
+public class RulesRepositoryHelperTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void createsImmutableVersions() throws Exception {
+		RulesRepositoryHelper repository = new RulesRepositoryHelper(RulesRepositoryHelper.STORE_LOCAL, folder.getRoot().getPath(), false);
+		try {
+			assertThat(repository.save(null, "unit-test", hobbies("Ski"))).isEqualTo(1);
+			assertThat(repository.save(null, "unit-test", hobbies("Travel"))).isEqualTo(2);
+
+			JSONObject latest = repository.get(null, "unit-test");
+			assertThat(latest.getInt(RulesRepositoryHelper.FIELD_VERSION)).isEqualTo(2);
+			assertThat(hobby(latest)).isEqualTo("Travel");
+			assertThat(hobby(repository.get(null, "unit-test", 1))).isEqualTo("Ski");
+			assertThat(repository.get(null, "unit-test", 3)).isNull();
+		} finally {
+			repository.shutdown();
+		}
+	}
+
+	@Test
+	public void neverOverwritesAVersionCreatedElsewhere() throws Exception {
+		// Another instance created the version 2 and didn't point the profile to it yet
+		Path directory = folder.getRoot().toPath();
+		try (LocalRulesRepository store = new LocalRulesRepository(directory)) {
+			store.save(null, "unit-test", hobbies("Ski").put(RulesRepositoryHelper.FIELD_VERSION, 1));
+			store.save(null, RulesRepositoryHelper.getVersionKey("unit-test", 1), hobbies("Ski").put(RulesRepositoryHelper.FIELD_VERSION, 1));
+			store.save(null, RulesRepositoryHelper.getVersionKey("unit-test", 2), hobbies("Golf").put(RulesRepositoryHelper.FIELD_VERSION, 2));
+			assertThat(store.create(null, RulesRepositoryHelper.getVersionKey("unit-test", 2), hobbies("Travel"))).isFalse();
+		}
+
+		RulesRepositoryHelper repository = new RulesRepositoryHelper(RulesRepositoryHelper.STORE_LOCAL, directory.toString(), false);
+		try {
+			assertThat(repository.save(null, "unit-test", hobbies("Travel"))).isEqualTo(3);
+			assertThat(hobby(repository.get(null, "unit-test", 2))).isEqualTo("Golf");
+			assertThat(hobby(repository.get(null, "unit-test", 3))).isEqualTo("Travel");
+			assertThat(repository.get(null, "unit-test").getInt(RulesRepositoryHelper.FIELD_VERSION)).isEqualTo(3);
+		} finally {
+			repository.shutdown();
+		}
+	}
+
+	@Test
+	public void replacesStaleLocalCopies() throws Exception {
+		RulesRepositoryHelper repository = new RulesRepositoryHelper(RulesRepositoryHelper.STORE_LOCAL, folder.getRoot().getPath(), false);
+		try {
+			repository.save(null, "unit-test", hobbies("Ski"));
+			repository.save(null, "other", hobbies("Java"));
+			assertThat(repository.resync(null)).isEmpty();
+
+			// Another instance saved a new version in the object microservice
+			MemoryRepository remote = new MemoryRepository();
+			remote.profiles.put("unit-test", repository.get(null, "unit-test").put(RulesRepositoryHelper.FIELD_VERSION, 2).put("$all", hobbies("Travel").get("$all")));
+			remote.profiles.put("other", repository.get(null, "other"));
+			remote.profiles.put("new", hobbies("Golf").put(RulesRepositoryHelper.FIELD_ID, "new"));
+			ReflectionTestUtils.setField(repository, "remote", remote);
+
+			assertThat(repository.resync(null)).containsExactlyInAnyOrder("unit-test", "new");
+			assertThat(hobby(repository.get(null, "unit-test"))).isEqualTo("Travel");
+			assertThat(hobby(repository.get(null, "new"))).isEqualTo("Golf");
+			assertThat(repository.resync(null)).isEmpty();
+		} finally {
+			repository.shutdown();
+		}
+	}
+
+	private static class MemoryRepository implements RulesRepository {
+
+		private final Map<String, JSONObject> profiles = new HashMap<>();
+
+		@Override
+		public JSONObject get(String authorizationHeader, String profile) {
+			return profiles.get(profile);
+		}
+
+		@Override
+		public Map<String, JSONObject> findLatest(String authorizationHeader) {
+			return new HashMap<>(profiles);
+		}
+
+		@Override
+		public void save(String authorizationHeader, String profile, JSONObject rules) {
+			profiles.put(profile, rules);
+		}
+
+		@Override
+		public boolean create(String authorizationHeader, String key, JSONObject rules) {
+			return profiles.putIfAbsent(key, rules) == null;
+		}
+
+	}
+
+}
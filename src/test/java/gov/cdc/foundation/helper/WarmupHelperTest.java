@@ -0,0 +1,44 @@
+package gov.cdc.foundation.helper;
+
+import static gov.cdc.foundation.RulesFixtures.hobbies;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class WarmupHelperTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void compilesEveryProfile() throws Exception {
+		RulesRepositoryHelper repository = new RulesRepositoryHelper(RulesRepositoryHelper.STORE_LOCAL, folder.getRoot().getPath(), false);
+		try {
+			for (int i = 0; i < 5; i++)
+				repository.save(null, "profile-" + i, hobbies("Ski"));
+			// A second version must not be warmed up as a profile of its own
+			repository.save(null, "profile-0", new JSONObject());
+
+			ProfileCacheHelper profiles = new ProfileCacheHelper(true, 100, 300, 10, 1, 0, new String[] { "$all" }, false, 0, false, false, new MetricsHelper(new SimpleMeterRegistry()), repository);
+			WarmupHelper warmup = new WarmupHelper(true, 2, null, profiles, repository);
+			assertThat(warmup.isReady()).isFalse();
+
+			warmup.warmup();
+			assertThat(warmup.isReady()).isTrue();
+			assertThat(warmup.getStatus().getInt("loaded")).isEqualTo(5);
+			assertThat(warmup.getStatus().getInt("failed")).isEqualTo(0);
+			assertThat(profiles.getStats().getLong("size")).isEqualTo(5);
+			// Compiled from the rules returned with the list, without fetching each profile again
+			assertThat(profiles.getStats().getLong("loads")).isEqualTo(0);
+			assertThat(profiles.get(null, "profile-0").getVersion()).isEqualTo(2);
+		} finally {
+			repository.shutdown();
+		}
+	}
+
+}
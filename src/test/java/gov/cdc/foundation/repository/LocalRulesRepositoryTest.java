@@ -0,0 +1,122 @@
+package gov.cdc.foundation.repository;
+
+import static gov.cdc.foundation.RulesFixtures.hobbies;
+import static gov.cdc.foundation.RulesFixtures.hobby;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LocalRulesRepositoryTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void keepsTheLastVersionOfEachProfile() throws Exception {
+		Path directory = folder.getRoot().toPath();
+		try (LocalRulesRepository repository = new LocalRulesRepository(directory)) {
+			assertThat(repository.get(null, "unit-test")).isNull();
+			repository.save(null, "unit-test", hobbies("Ski"));
+			repository.save(null, "other", hobbies("Java"));
+			repository.save(null, "unit-test", hobbies("Travel"));
+
+			assertThat(repository.get(null, "unit-test").getString("_id")).isEqualTo("unit-test");
+			assertThat(hobby(repository.get(null, "unit-test"))).isEqualTo("Travel");
+			assertThat(repository.getProfiles()).containsExactlyInAnyOrder("unit-test", "other");
+		}
+	}
+
+	@Test
+	public void reloadsFromTheIndexAndTheLog() throws Exception {
+		Path directory = folder.getRoot().toPath();
+		try (LocalRulesRepository repository = new LocalRulesRepository(directory)) {
+			repository.save(null, "unit-test", hobbies("Ski"));
+		}
+		assertThat(Files.exists(directory.resolve(LocalRulesRepository.INDEX_FILE))).isTrue();
+
+		// Records appended after the snapshot are replayed
+		LocalRulesRepository repository = new LocalRulesRepository(directory);
+		repository.save(null, "other", hobbies("Java"));
+		try (LocalRulesRepository reopened = new LocalRulesRepository(directory)) {
+			assertThat(hobby(reopened.get(null, "unit-test"))).isEqualTo("Ski");
+			assertThat(hobby(reopened.get(null, "other"))).isEqualTo("Java");
+		}
+		repository.close();
+	}
+
+	@Test
+	public void truncatesPartialRecords() throws Exception {
+		Path directory = folder.getRoot().toPath();
+		try (LocalRulesRepository repository = new LocalRulesRepository(directory)) {
+			repository.save(null, "unit-test", hobbies("Ski"));
+		}
+		Files.delete(directory.resolve(LocalRulesRepository.INDEX_FILE));
+		long size = Files.size(directory.resolve(LocalRulesRepository.LOG_FILE));
+		append(directory.resolve(LocalRulesRepository.LOG_FILE), new byte[] { 0, 0, 0, 5, 0, 0 });
+
+		try (LocalRulesRepository repository = new LocalRulesRepository(directory)) {
+			assertThat(hobby(repository.get(null, "unit-test"))).isEqualTo("Ski");
+			assertThat(Files.size(directory.resolve(LocalRulesRepository.LOG_FILE))).isEqualTo(size);
+		}
+	}
+
+	@Test
+	public void readsValuesAcrossSegments() throws Exception {
+		Path directory = folder.getRoot().toPath();
+		// Segments smaller than a record, so that every value spans several of them
+		try (LocalRulesRepository repository = new LocalRulesRepository(directory, 16, Long.MAX_VALUE)) {
+			for (int i = 0; i < 10; i++)
+				repository.save(null, "profile-" + i, hobbies("Hobby " + i));
+			for (int i = 0; i < 10; i++)
+				assertThat(hobby(repository.get(null, "profile-" + i))).isEqualTo("Hobby " + i);
+		}
+		try (LocalRulesRepository reopened = new LocalRulesRepository(directory, 16, Long.MAX_VALUE)) {
+			assertThat(hobby(reopened.get(null, "profile-9"))).isEqualTo("Hobby 9");
+		}
+	}
+
+	@Test
+	public void compactsOverwrittenRecords() throws Exception {
+		Path directory = folder.getRoot().toPath();
+		Path log = directory.resolve(LocalRulesRepository.LOG_FILE);
+		try (LocalRulesRepository repository = new LocalRulesRepository(directory, 64, 1024)) {
+			repository.save(null, "other", hobbies("Java"));
+			long single = Files.size(log);
+			for (int i = 0; i < 100; i++)
+				repository.save(null, "unit-test", hobbies("Hobby " + i));
+
+			// The log is compacted on the way, it never holds all the records
+			assertThat(Files.size(log)).isLessThan(single * 50);
+			assertThat(hobby(repository.get(null, "unit-test"))).isEqualTo("Hobby 99");
+
+			repository.compact();
+			assertThat(Files.size(log)).isLessThan(single * 3);
+			assertThat(hobby(repository.get(null, "unit-test"))).isEqualTo("Hobby 99");
+			assertThat(hobby(repository.get(null, "other"))).isEqualTo("Java");
+			repository.save(null, "unit-test", hobbies("Ski"));
+		}
+
+		// The index and the log written after the compaction are reloaded
+		try (LocalRulesRepository reopened = new LocalRulesRepository(directory)) {
+			assertThat(hobby(reopened.get(null, "unit-test"))).isEqualTo("Ski");
+			assertThat(hobby(reopened.get(null, "other"))).isEqualTo("Java");
+			assertThat(reopened.getProfiles()).containsExactlyInAnyOrder("unit-test", "other");
+		}
+	}
+
+	private static void append(Path file, byte[] bytes) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+			channel.write(ByteBuffer.wrap(bytes));
+		}
+	}
+
+}
@@ -0,0 +1,137 @@
+package gov.cdc.foundation.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.common.exceptions.InvalidTokenException;
+import org.springframework.security.oauth2.provider.OAuth2Authentication;
+import org.springframework.security.oauth2.provider.token.ResourceServerTokenServices;
+
+public class CachingTokenServicesTest {
+
+	@Test
+	public void introspectsEachTokenOnce() {
+		CountingTokenServices delegate = new CountingTokenServices(expiresIn(3600));
+		CachingTokenServices tokenServices = new CachingTokenServices(delegate, 10, 60, null);
+
+		OAuth2Authentication first = tokenServices.loadAuthentication("token");
+		OAuth2Authentication second = tokenServices.loadAuthentication("token");
+		assertThat(delegate.calls.get()).isEqualTo(1);
+		assertThat(second).isNotSameAs(first);
+		assertThat(second.getOAuth2Request().getScope()).containsExactly("fdns.rules");
+
+		tokenServices.loadAuthentication("other");
+		assertThat(delegate.calls.get()).isEqualTo(2);
+	}
+
+	@Test
+	public void collapsesConcurrentLookups() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		CountingTokenServices delegate = new CountingTokenServices(expiresIn(3600)) {
+			@Override
+			public OAuth2Authentication loadAuthentication(String accessToken) {
+				try {
+					release.await(5, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return super.loadAuthentication(accessToken);
+			}
+		};
+		CachingTokenServices tokenServices = new CachingTokenServices(delegate, 10, 60, null);
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<OAuth2Authentication>> futures = new ArrayList<>();
+			for (int i = 0; i < 8; i++)
+				futures.add(executor.submit((Callable<OAuth2Authentication>) () -> tokenServices.loadAuthentication("token")));
+			release.countDown();
+			for (Future<OAuth2Authentication> future : futures)
+				assertThat(future.get(5, TimeUnit.SECONDS)).isNotNull();
+		} finally {
+			executor.shutdownNow();
+		}
+		assertThat(delegate.calls.get()).isEqualTo(1);
+	}
+
+	@Test
+	public void expiresWithTheTokenOrTheMaxTtl() {
+		AtomicLong now = new AtomicLong();
+		CountingTokenServices delegate = new CountingTokenServices(expiresIn(3600));
+		CachingTokenServices tokenServices = new CachingTokenServices(delegate, 10, 60, null, now::get);
+
+		tokenServices.loadAuthentication("token");
+		now.addAndGet(TimeUnit.SECONDS.toNanos(61));
+		tokenServices.loadAuthentication("token");
+		assertThat(delegate.calls.get()).isEqualTo(2);
+
+		CountingTokenServices expired = new CountingTokenServices(expiresIn(-1));
+		CachingTokenServices expiredTokenServices = new CachingTokenServices(expired, 10, 60, null);
+		expiredTokenServices.loadAuthentication("token");
+		expiredTokenServices.loadAuthentication("token");
+		assertThat(expired.calls.get()).isEqualTo(2);
+	}
+
+	@Test
+	public void doesNotCacheRejectedTokens() {
+		AtomicInteger calls = new AtomicInteger();
+		CachingTokenServices tokenServices = new CachingTokenServices(new CountingTokenServices(null) {
+			@Override
+			public OAuth2Authentication loadAuthentication(String accessToken) {
+				calls.incrementAndGet();
+				throw new InvalidTokenException(accessToken);
+			}
+		}, 10, 60, null);
+
+		assertThatThrownBy(() -> tokenServices.loadAuthentication("token")).isInstanceOf(InvalidTokenException.class);
+		assertThatThrownBy(() -> tokenServices.loadAuthentication("token")).isInstanceOf(InvalidTokenException.class);
+		assertThat(calls.get()).isEqualTo(2);
+	}
+
+	private static Map<String, Object> expiresIn(long seconds) {
+		Map<String, Object> response = new HashMap<>();
+		response.put("client_id", "client");
+		response.put("scope", Collections.singletonList("fdns.rules"));
+		response.put("exp", TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + seconds);
+		return response;
+	}
+
+	private static class CountingTokenServices implements ResourceServerTokenServices {
+
+		private final AtomicInteger calls = new AtomicInteger();
+		private final Map<String, Object> response;
+
+		public CountingTokenServices(Map<String, Object> response) {
+			this.response = response;
+		}
+
+		@Override
+		public OAuth2Authentication loadAuthentication(String accessToken) {
+			calls.incrementAndGet();
+			return new CachingTokenServices.ExpiryAccessTokenConverter().extractAuthentication(response);
+		}
+
+		@Override
+		public OAuth2AccessToken readAccessToken(String accessToken) {
+			throw new UnsupportedOperationException();
+		}
+
+	}
+
+}
@@ -0,0 +1,33 @@
+package gov.cdc.foundation.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class ScopeIndexTest {
+
+	@Test
+	public void grantsProfilePermissions() {
+		ScopeIndex index = new ScopeIndex(Arrays.asList("fdns.rules", "fdns.rules.myprofile.read", "fdns.rules.other.profile.*", "fdns.object.myprofile.update"));
+
+		assertThat(index.isGranted("myprofile", "read")).isTrue();
+		assertThat(index.isGranted("myprofile", "create", "update")).isFalse();
+		assertThat(index.isGranted("other.profile", "create", "update")).isTrue();
+		assertThat(index.isGranted("unknown", "read")).isFalse();
+		assertThat(index.getProfiles()).containsExactlyInAnyOrder("myprofile", "other.profile");
+	}
+
+	@Test
+	public void grantsWildcardProfiles() {
+		ScopeIndex index = new ScopeIndex(Arrays.asList("fdns.rules.*.read", "fdns.rules.admin.*"));
+
+		assertThat(index.isGranted("myprofile", "read")).isTrue();
+		assertThat(index.isGranted("*", "read")).isTrue();
+		assertThat(index.isGranted("myprofile", "update")).isFalse();
+		assertThat(index.isGranted("admin", "update")).isTrue();
+		assertThat(new ScopeIndex(Arrays.asList("fdns.rules.*.*")).isGranted("*", "read")).isTrue();
+	}
+
+}